@@ -0,0 +1,187 @@
+package benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The JMH benchmark of the sets. It run the same operations like TestIntegerSet but with a real warm up, forks and
+ * statistic. Every operation is one benchmark method, the set class and the size are parameters.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+@State( Scope.Thread )
+public class SetBenchmark {
+
+    /**
+     * The classes of TestIntegerSet.classes. An annotation need constant values, that this list must be changed
+     * together with TestIntegerSet.classes. Can be overridden on the command line with -p setClass=...
+     */
+    @Param( { "sets.PagedIntSet", "sets.OffHeapPagedIntSet", "sets.ConcurrentPagedIntSet",
+                    "sets.IntCompactSet", "sets.CompactSet", "java.util.HashSet", "java.util.LinkedHashSet" } )
+    public String       setClass;
+
+    @Param( { "1000", "100000", "1000000" } )
+    public int          size;
+
+    private Set<Integer> filled;
+
+    @Setup( Level.Trial )
+    public void setup() throws Exception {
+        filled = fill( newSet( setClass ), size );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        close( filled );
+    }
+
+    /**
+     * Create an empty set of the given class.
+     *
+     * @param className
+     *            the class name
+     * @return the new set
+     * @throws Exception
+     *             if any go wrong, we are in a benchmark, we does not need an error handling
+     */
+    @SuppressWarnings( "unchecked" )
+    static Set<Integer> newSet( String className ) throws Exception {
+        return (Set<Integer>)Class.forName( className ).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Free the direct memory of an off heap set. The other sets are left to the garbage collector.
+     *
+     * @param set
+     *            the set
+     * @throws Exception
+     *             if any go wrong
+     */
+    static void close( Set<Integer> set ) throws Exception {
+        if( set instanceof AutoCloseable ) {
+            ((AutoCloseable)set).close();
+        }
+    }
+
+    /**
+     * Add the same values like TestIntegerSet.
+     *
+     * @param set
+     *            the target
+     * @param size
+     *            the count of values
+     * @return the set
+     */
+    static Set<Integer> fill( Set<Integer> set, int size ) {
+        for( int i = 0; i < size; i++ ) {
+            set.add( i * 3 );
+        }
+        return set;
+    }
+
+    @Benchmark
+    public Set<Integer> add( AddState state ) throws Exception {
+        return state.set = fill( newSet( setClass ), size );
+    }
+
+    @Benchmark
+    public void contains( Blackhole blackhole ) {
+        Set<Integer> set = filled;
+        for( int i = 0; i < size; i++ ) {
+            blackhole.consume( set.contains( i ) );
+        }
+    }
+
+    @Benchmark
+    public void iterate( Blackhole blackhole ) {
+        for( Integer value : filled ) {
+            blackhole.consume( value );
+        }
+    }
+
+    @Benchmark
+    public void remove( RemoveState state, Blackhole blackhole ) {
+        Set<Integer> set = state.set;
+        for( int i = 0; i < size; i++ ) {
+            blackhole.consume( set.remove( i * 3 ) );
+        }
+    }
+
+    /**
+     * Hold the set of an add invocation until it is closed. JMH measures with an invocation level fixture reliable
+     * only if the invocation takes more as about 1 ms. The results of add and remove with size 1000 are therefore only
+     * indicative.
+     */
+    @State( Scope.Thread )
+    public static class AddState {
+
+        Set<Integer> set;
+
+        @TearDown( Level.Invocation )
+        public void tearDown() throws Exception {
+            close( set );
+            set = null;
+        }
+    }
+
+    /**
+     * A fresh filled set for every remove invocation. Like AddState only indicative for small sizes.
+     */
+    @State( Scope.Thread )
+    public static class RemoveState {
+
+        Set<Integer> set;
+
+        @Setup( Level.Invocation )
+        public void setup( SetBenchmark benchmark ) throws Exception {
+            set = fill( newSet( benchmark.setClass ), benchmark.size );
+        }
+
+        @TearDown( Level.Invocation )
+        public void tearDown() throws Exception {
+            close( set );
+        }
+    }
+
+    /**
+     * Without arguments run all benchmarks with the GC profiler to see also the allocation rate. With arguments the
+     * arguments are the JMH command line options, for example a benchmark filter, -p or -prof.
+     *
+     * @param args
+     *            the JMH command line options
+     * @throws Exception
+     *             if any go wrong
+     */
+    public static void main( String[] args ) throws Exception {
+        if( args.length > 0 ) {
+            Main.main( args );
+            return;
+        }
+        new Runner( new OptionsBuilder() //
+                        .include( SetBenchmark.class.getSimpleName() ) //
+                        .addProfiler( GCProfiler.class ) //
+                        .build() ).run();
+    }
+}
@@ -3,7 +3,9 @@
 import java.util.Set;
 
 import sets.CompactSet;
+import sets.ConcurrentPagedIntSet;
 import sets.IntCompactSet;
+import sets.OffHeapPagedIntSet;
 import sets.PagedIntSet;
 
 /**
@@ -13,8 +15,10 @@
  */
 public class TestIntegerSet {
 
+    // keep the @Param setClass list of benchmark.SetBenchmark in sync
     public static Class<? extends Set<Integer>>[] classes =
-                    new Class[] { PagedIntSet.class, IntCompactSet.class, CompactSet.class, HashSet.class, LinkedHashSet.class };
+                    new Class[] { PagedIntSet.class, OffHeapPagedIntSet.class, ConcurrentPagedIntSet.class,
+                                  IntCompactSet.class, CompactSet.class, HashSet.class, LinkedHashSet.class };
 
     public static void main( String[] args ) throws Exception {
         // heat up of the JVM
@@ -101,6 +105,9 @@ static TestResult testSet( Class<? extends Set<Integer>> setClass, int size ) th
         result.removeTime = System.currentTimeMillis() - time;
 
         // cleanup for the next test
+        if( set instanceof AutoCloseable ) {
+            ((AutoCloseable)set).close();
+        }
         set = null;
         memoryUsage();
 
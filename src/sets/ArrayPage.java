@@ -0,0 +1,218 @@
+package sets;
+
+import java.util.Arrays;
+
+/**
+ * A page for a small count of values. The values are saved sorted in a char array. A value is found with a binary
+ * search. If there are too many values for the moving of the values on insert then it will be replaced with a
+ * HashPage. If the values are long runs then it will be replaced with a RunPage.
+ */
+class ArrayPage extends Page {
+
+    /**
+     * The maximum count of values. Above it is replaced with another page implementation.
+     */
+    static final int MAX_SIZE = 1024;
+
+    private char[]   values;
+
+    private int      size;
+
+    /**
+     * Create a new empty instance.
+     */
+    ArrayPage() {
+        values = new char[2];
+    }
+
+    /**
+     * Create an array page that use the sorted values.
+     *
+     * @param values the sorted values
+     * @param size the count of values in the array
+     */
+    ArrayPage( char[] values, int size ) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Create an array page with the values of another page.
+     *
+     * @param page the source
+     */
+    ArrayPage( Page page ) {
+        values = page.toSortedArray();
+        size = values.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page add( char value ) {
+        int idx = Arrays.binarySearch( values, 0, size, value );
+        if( idx >= 0 ) {
+            return this;
+        }
+        idx = -idx - 1;
+        if( size == values.length ) {
+            if( runCount() * 4 <= size ) {
+                // the runs need not more as the half of the array
+                return new RunPage( this ).add( value );
+            }
+            if( size >= MAX_SIZE ) { // a page of a compact frozen set can be larger
+                return new HashPage( this ).add( value );
+            }
+            // no load factor, only a small reserve for the next values
+            values = Arrays.copyOf( values, java.lang.Math.min( size + java.lang.Math.max( 2, size >> 3 ), MAX_SIZE ) );
+        }
+        System.arraycopy( values, idx, values, idx + 1, size - idx );
+        values[idx] = value;
+        size++;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page remove( char value ) {
+        int idx = Arrays.binarySearch( values, 0, size, value );
+        if( idx < 0 ) {
+            return this;
+        }
+        size--;
+        System.arraycopy( values, idx + 1, values, idx, size - idx );
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean contains( char value ) {
+        return Arrays.binarySearch( values, 0, size, value ) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int nextPosition( int pos ) {
+        return pos < size ? pos : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int ceilingPosition( int value ) {
+        if( value > Character.MAX_VALUE ) {
+            return -1;
+        }
+        int idx = Arrays.binarySearch( values, 0, size, (char)value );
+        if( idx < 0 ) {
+            idx = -idx - 1;
+        }
+        return idx < size ? idx : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int floor( int value ) {
+        if( value < 0 ) {
+            return -1;
+        }
+        int idx = Arrays.binarySearch( values, 0, size, (char)value );
+        if( idx < 0 ) {
+            idx = -idx - 2;
+        }
+        return idx >= 0 ? values[idx] : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char valueAt( int pos ) {
+        return values[pos];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int rank( int value ) {
+        if( value > Character.MAX_VALUE ) {
+            return size;
+        }
+        int idx = Arrays.binarySearch( values, 0, size, (char)value );
+        return idx < 0 ? -idx - 1 : idx;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char select( int index ) {
+        return values[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page copy() {
+        return new ArrayPage( Arrays.copyOf( values, size ), size );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    long estimatedSizeInBytes() {
+        return MemoryEstimate.object( 1 + MemoryEstimate.REFERENCE + 4 ) + MemoryEstimate.array( values.length, 2 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int slackInBytes() {
+        return (values.length - size) * 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char[] toSortedArray() {
+        return Arrays.copyOf( values, size );
+    }
+
+    /**
+     * Count the runs of consecutive values.
+     *
+     * @return the count of runs
+     */
+    private int runCount() {
+        int count = 0;
+        for( int i = 0; i < size; i++ ) {
+            if( i == 0 || values[i - 1] + 1 != values[i] ) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,335 @@
+package sets;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A page for a high count of values. Every of the 65536 possible values has one bit. The memory is fix 8 KB. If the
+ * page thins out then it will be replaced with a HashPage. If the values are long runs then it will be replaced with a
+ * RunPage.
+ */
+class BitmapPage extends Page {
+
+    /**
+     * Below this count of values the page is replaced with a HashPage. It is lower as the capacity of a HashPage to
+     * prevent a toggle between the implementations.
+     */
+    static final int         MIN_SIZE           = 2048;
+
+    /**
+     * The memory of the bitmap.
+     */
+    static final int         SIZE_IN_BYTES      = 8192;
+
+    /**
+     * Every time the size is a multiple of this value, it is checked whether a RunPage would be smaller.
+     */
+    private static final int RUN_CHECK_INTERVAL = 1024;
+
+    final long[]             words;
+
+    private int              size;
+
+    /**
+     * Create a new empty instance.
+     */
+    BitmapPage() {
+        words = new long[1024];
+    }
+
+    /**
+     * Create a bitmap page that use the bitmap.
+     *
+     * @param words the bitmap of 1024 words
+     * @param size the count of set bits
+     */
+    BitmapPage( long[] words, int size ) {
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * Create a bitmap page with sorted values.
+     *
+     * @param values the values
+     * @param count the count of values in the array
+     */
+    BitmapPage( char[] values, int count ) {
+        this();
+        for( int i = 0; i < count; i++ ) {
+            char value = values[i];
+            words[value >>> 6] |= 1L << value;
+        }
+        size = cardinality();
+    }
+
+    /**
+     * Create a bitmap page with the values of another page.
+     *
+     * @param page the source
+     */
+    BitmapPage( Page page ) {
+        this();
+        for( int pos = page.nextPosition( 0 ); pos >= 0; pos = page.nextPosition( pos + 1 ) ) {
+            char value = page.valueAt( pos );
+            words[value >>> 6] |= 1L << value;
+        }
+        size = cardinality();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page add( char value ) {
+        int idx = value >>> 6;
+        long word = words[idx];
+        long newWord = word | (1L << value);
+        words[idx] = newWord;
+        // add 1 if the bit was not set before
+        size += (int)((word ^ newWord) >>> value);
+        if( size % RUN_CHECK_INTERVAL == 0 && word != newWord ) {
+            return optimizeRuns();
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page remove( char value ) {
+        int idx = value >>> 6;
+        long word = words[idx];
+        long newWord = word & ~(1L << value);
+        words[idx] = newWord;
+        // subtract 1 if the bit was set before
+        size -= (int)((word ^ newWord) >>> value);
+        if( size < MIN_SIZE ) {
+            return runCount() * 4 <= HashPage.sizeInBytes( size ) / 2 ? new RunPage( this ) : new HashPage( this );
+        }
+        if( size % RUN_CHECK_INTERVAL == 0 && word != newWord ) {
+            return optimizeRuns();
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean contains( char value ) {
+        return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int nextPosition( int pos ) {
+        if( pos > Character.MAX_VALUE ) {
+            return -1;
+        }
+        int idx = pos >>> 6;
+        long word = words[idx] & (-1L << pos);
+        while( word == 0 ) {
+            if( ++idx == words.length ) {
+                return -1;
+            }
+            word = words[idx];
+        }
+        return (idx << 6) + Long.numberOfTrailingZeros( word );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int ceilingPosition( int value ) {
+        return nextPosition( value );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int floor( int value ) {
+        if( value < 0 ) {
+            return -1;
+        }
+        int idx = value >>> 6;
+        long word = words[idx] & (-1L >>> (63 - (value & 63)));
+        while( word == 0 ) {
+            if( --idx < 0 ) {
+                return -1;
+            }
+            word = words[idx];
+        }
+        return (idx << 6) + 63 - Long.numberOfLeadingZeros( word );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char valueAt( int pos ) {
+        return (char)pos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int rank( int value ) {
+        if( value > Character.MAX_VALUE ) {
+            return size;
+        }
+        int idx = value >>> 6;
+        int count = Long.bitCount( words[idx] & ((1L << value) - 1) );
+        for( int i = 0; i < idx; i++ ) {
+            count += Long.bitCount( words[i] );
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char select( int index ) {
+        int idx = 0;
+        for( int count; (count = Long.bitCount( words[idx] )) <= index; idx++ ) {
+            index -= count;
+        }
+        long word = words[idx];
+        for( ; index > 0; index-- ) {
+            word &= word - 1; // clear the lowest bit
+        }
+        return (char)((idx << 6) + Long.numberOfTrailingZeros( word ));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page copy() {
+        return new BitmapPage( words.clone(), size );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    long estimatedSizeInBytes() {
+        return MemoryEstimate.object( 1 + MemoryEstimate.REFERENCE + 4 ) + MemoryEstimate.array( words.length, 8 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int slackInBytes() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void orInto( long[] target ) {
+        for( int i = 0; i < target.length; i++ ) {
+            target[i] |= words[i];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void andNotInto( long[] target ) {
+        for( int i = 0; i < target.length; i++ ) {
+            target[i] &= ~words[i];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void xorInto( long[] target ) {
+        for( int i = 0; i < target.length; i++ ) {
+            target[i] ^= words[i];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int formatType() {
+        return FORMAT_BITMAP;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int formatLength() {
+        return SIZE_IN_BYTES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void write( DataOutput out ) throws IOException {
+        for( long word : words ) {
+            out.writeLong( word );
+        }
+    }
+
+    /**
+     * Replace this page with a RunPage if the runs need less as the half of the bitmap.
+     *
+     * @return this or the replacement
+     */
+    private Page optimizeRuns() {
+        return runCount() * 4 <= SIZE_IN_BYTES / 2 ? new RunPage( this ) : this;
+    }
+
+    /**
+     * Count the runs of consecutive values. A bit is the start of a run if the previous bit is not set.
+     *
+     * @return the count of runs
+     */
+    int runCount() {
+        int count = 0;
+        long previous = 0;
+        for( long word : words ) {
+            count += Long.bitCount( word & ~((word << 1) | (previous >>> 63)) );
+            previous = word;
+        }
+        return count;
+    }
+
+    /**
+     * Count the values with the population count of the words.
+     *
+     * @return the count of set bits
+     */
+    int cardinality() {
+        int count = 0;
+        for( long word : words ) {
+            count += Long.bitCount( word );
+        }
+        return count;
+    }
+}
@@ -2,37 +2,149 @@
 
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * A low memory set. The values are saved in a Object array. 
  * If 2 values need to put on the same place in the array it will be put on the next free position of the cluster.  
+ * Optional the hash codes can be saved in a parallel int array. Then equals() is only called if the hash codes are
+ * equal and hashCode() is called only once per add, remove or contains. This is faster for values with expensive
+ * hashCode() or equals() like strings or composite keys and cost 4 bytes per slot.
+ * <p>
+ * With an incremental resize the old table is kept after a resize and every add and remove move some clusters of it
+ * into the new table, that a single add never rehash all values. The lookups search both tables until the old table
+ * is empty.
  */
-public class CompactSet extends AbstractSet<Object> {
+public class CompactSet extends AbstractSet<Object> implements MemoryFootprint {
 
     private static final float LOAD_FACTOR   = 0.75f;
 
     private static final float RESIZE_FACTOR = 1.5f;
 
-    private Object[]           elements      = new Object[3];
+    /**
+     * The count of slots of the old table that are migrated on every add and remove of an incremental resize.
+     */
+    private static final int   MIGRATE_SLOTS = 8;
+
+    private Object[]           elements;
+
+    /**
+     * The hash codes of the elements or null if the hash codes are not cached.
+     */
+    private int[]              hashes;
 
     private int                size          = 0;
 
+    private int                modCount;
+
+    /**
+     * The table is not shrunk below this capacity.
+     */
+    private int                minCapacity;
+
+    private final boolean      incrementalResize;
+
+    /**
+     * The table before an incremental resize or null if all values are migrated.
+     */
+    private Object[]           oldElements;
+
+    private int[]              oldHashes;
+
+    /**
+     * The count of values in the old table.
+     */
+    private int                oldCount;
+
+    /**
+     * The next slot of the old table that is migrated. The slots before are empty.
+     */
+    private int                migrateIndex;
+
+    /**
+     * Create a new instance without cached hash codes.
+     */
+    public CompactSet() {
+        this( 0, false );
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param cacheHashes true, if the hash codes of the values should be saved
+     */
+    public CompactSet( boolean cacheHashes ) {
+        this( 0, cacheHashes );
+    }
+
+    /**
+     * Create a new instance without cached hash codes with a table for the expected count of values.
+     *
+     * @param expectedSize the expected count of values
+     */
+    public CompactSet( int expectedSize ) {
+        this( expectedSize, false );
+    }
+
+    /**
+     * Create a new instance with a table for the expected count of values. The table is not shrunk below this size
+     * until trimToSize() is called.
+     *
+     * @param expectedSize the expected count of values
+     * @param cacheHashes true, if the hash codes of the values should be saved
+     */
+    public CompactSet( int expectedSize, boolean cacheHashes ) {
+        this( expectedSize, cacheHashes, false );
+    }
+
+    /**
+     * Create a new instance with a table for the expected count of values. The table is not shrunk below this size
+     * until trimToSize() is called.
+     *
+     * @param expectedSize the expected count of values
+     * @param cacheHashes true, if the hash codes of the values should be saved
+     * @param incrementalResize true, if the values are moved to a resized table over the following adds and removes
+     *            instead of all at once
+     */
+    public CompactSet( int expectedSize, boolean cacheHashes, boolean incrementalResize ) {
+        this.incrementalResize = incrementalResize;
+        if( expectedSize < 0 ) {
+            throw new IllegalArgumentException( "expectedSize: " + expectedSize );
+        }
+        minCapacity = capacityFor( expectedSize );
+        elements = new Object[minCapacity];
+        if( cacheHashes ) {
+            hashes = new int[minCapacity];
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean add( Object obj ) {
-        int slot = findSlot( obj );
-        if( elements[slot] != null ) {
+        int hash = obj.hashCode();
+        int slot = findSlot( obj, hash );
+        if( elements[slot] != null || (oldElements != null && findOldSlot( obj, hash ) >= 0) ) {
             return false;
         }
         if( (size + 1) >= (LOAD_FACTOR * elements.length) ) {
-            resize();
-            slot = findSlot( obj );
+            resize( java.lang.Math.max( (int)(RESIZE_FACTOR * elements.length), elements.length + 1 ) );
+            slot = findSlot( obj, hash );
         }
         elements[slot] = obj;
+        if( hashes != null ) {
+            hashes[slot] = hash;
+        }
+        if( oldElements != null ) {
+            migrate( MIGRATE_SLOTS );
+        }
         size++;
+        modCount++;
         return true;
     }
 
@@ -41,23 +153,65 @@ public boolean add( Object obj ) {
      */
     @Override
     public boolean remove( Object obj ) {
-        int slot = findSlot( obj );
+        int hash = obj.hashCode();
+        int slot = findSlot( obj, hash );
+        if( elements[slot] == null && oldElements != null ) {
+            int oldSlot = findOldSlot( obj, hash );
+            if( oldSlot >= 0 ) {
+                // a remove in the old table would move values before the migrate index, move the cluster first
+                migrateCluster( oldSlot );
+                slot = findSlot( obj, hash );
+            }
+        }
         if( elements[slot] == null ) {
             return false;
         }
         elements[slot] = null;
-        tampCollisions( slot );
+        tampCollisions( slot, null );
+        if( oldElements != null ) {
+            migrate( MIGRATE_SLOTS );
+        }
         size--;
+        modCount++;
+        if( size < elements.length / 4 && elements.length > minCapacity && oldElements == null ) {
+            // the new table is filled up to the half, that alternating adds and removes can not resize every time
+            resize( java.lang.Math.max( 2 * size, minCapacity ) );
+        }
         return true;
     }
 
+    /**
+     * Reduce the table to the smallest capacity for the current values. Also the capacity of the constructor is
+     * released.
+     */
+    public void trimToSize() {
+        minCapacity = capacityFor( 0 );
+        int capacity = capacityFor( size );
+        if( capacity < elements.length ) {
+            resize( capacity );
+            finishResize(); // release the old table now
+            modCount++;
+        }
+    }
+
+    /**
+     * The minimum capacity of a table for the count of values without a resize.
+     *
+     * @param count the count of values
+     * @return the capacity
+     */
+    private static int capacityFor( int count ) {
+        return java.lang.Math.max( (int)(count / LOAD_FACTOR) + 2, 3 );
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean contains( Object o ) {
-        int slot = findSlot( o );
-        return elements[slot] != null;
+        int hash = o.hashCode();
+        int slot = findSlot( o, hash );
+        return elements[slot] != null || (oldElements != null && findOldSlot( o, hash ) >= 0);
     }
 
     /**
@@ -68,50 +222,212 @@ public int size() {
         return size;
     }
 
+    /**
+     * {@inheritDoc} The memory of the values self is not included.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        long bytes = MemoryEstimate.object( 4 * MemoryEstimate.REFERENCE + 21 )
+                        + MemoryEstimate.array( elements.length, MemoryEstimate.REFERENCE );
+        if( hashes != null ) {
+            bytes += MemoryEstimate.array( hashes.length, 4 );
+        }
+        if( oldElements != null ) {
+            bytes += MemoryEstimate.array( oldElements.length, MemoryEstimate.REFERENCE );
+        }
+        if( oldHashes != null ) {
+            bytes += MemoryEstimate.array( oldHashes.length, 4 );
+        }
+        return bytes;
+    }
+
     /**
      * Remove possible collisions after a delete
      * 
      * @param index the start index (position of delete)
+     * @param iterator the iterator that has deleted the value or null
      */
-    private void tampCollisions( int index ) {
+    private void tampCollisions( int index, Itr iterator ) {
+        int moved = 0;
         for( int i = nextIndex( index ); elements[i] != null; i = nextIndex( i ) ) {
-            int slot = findSlot( elements[i] );
+            int slot = findSlot( elements[i], hashAt( i ) );
             if( slot != i ) {
+                if( iterator != null && i < index && slot >= index ) {
+                    // a wrapped value moves from the not visited part into the visited part of the iterator
+                    iterator.addWrapped( elements[i] );
+                }
                 elements[slot] = elements[i];
                 elements[i] = null;
+                if( hashes != null ) {
+                    hashes[slot] = hashes[i];
+                }
+                moved++;
             }
         }
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.COMPACT_SET.moved( moved );
+        }
     }
 
     /**
      * Resize the the size of the table.
+     *
+     * @param capacity the new capacity
      */
-    private void resize() {
+    private void resize( int capacity ) {
+        long start = HashStatistics.ENABLED ? System.nanoTime() : 0;
+        finishResize();
         Object[] oldElements = elements;
-        int capacity = java.lang.Math.max( (int)(RESIZE_FACTOR * elements.length), elements.length + 1 );
+        int[] oldHashes = hashes;
         elements = new Object[capacity];
-        size = 0;
-        for( int i = 0; i < oldElements.length; ++i )
-            if( oldElements[i] != null ) {
-                add( oldElements[i] );
+        if( oldHashes != null ) {
+            hashes = new int[capacity];
+        }
+        if( incrementalResize ) {
+            if( size > 0 ) {
+                this.oldElements = oldElements;
+                this.oldHashes = oldHashes;
+                oldCount = size;
+                migrateIndex = 0;
+            }
+        } else {
+            for( int i = 0; i < oldElements.length; ++i ) {
+                Object obj = oldElements[i];
+                if( obj != null ) {
+                    insert( obj, oldHashes != null ? oldHashes[i] : obj.hashCode() );
+                }
+            }
+        }
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.COMPACT_SET.resized( System.nanoTime() - start );
+        }
+    }
+
+    /**
+     * Insert a value that is not in the table without equals() calls.
+     *
+     * @param obj the value
+     * @param hash the hash code of the value
+     */
+    private void insert( Object obj, int hash ) {
+        // the values are unique, that the first free slot is the right one
+        int slot = firstSlot( hash );
+        while( elements[slot] != null ) {
+            slot = nextIndex( slot );
+        }
+        elements[slot] = obj;
+        if( hashes != null ) {
+            hashes[slot] = hash;
+        }
+    }
+
+    /**
+     * Move all values of the old table of an incremental resize into the current table.
+     */
+    private void finishResize() {
+        if( oldElements != null ) {
+            migrate( oldElements.length );
+        }
+    }
+
+    /**
+     * Move the clusters of some slots of the old table into the current table.
+     *
+     * @param slots the count of slots
+     */
+    private void migrate( int slots ) {
+        for( ; slots > 0 && oldElements != null; slots-- ) {
+            if( oldElements[migrateIndex] != null ) {
+                migrateCluster( migrateIndex );
+            }
+            migrateIndex++;
+        }
+    }
+
+    /**
+     * Move a whole cluster of the old table into the current table. Only whole clusters are moved, that the lookups
+     * in the rest of the old table find the values without any tamp of collisions.
+     *
+     * @param index any slot of the cluster
+     */
+    private void migrateCluster( int index ) {
+        Object[] old = oldElements;
+        int i = index;
+        while( old[(i + old.length - 1) % old.length] != null ) {
+            // the start of the cluster, the slots before the migrate index are already empty
+            i = (i + old.length - 1) % old.length;
+        }
+        for( ; old[i] != null; i = (i + 1) % old.length ) {
+            insert( old[i], oldHashes != null ? oldHashes[i] : old[i].hashCode() );
+            old[i] = null;
+            oldCount--;
+        }
+        if( oldCount == 0 ) {
+            oldElements = null;
+            oldHashes = null;
+        }
+    }
+
+    /**
+     * Find an object in the old table of an incremental resize.
+     *
+     * @param obj the object
+     * @param hash the hash code of the object
+     * @return the index or -1 if not found
+     */
+    private int findOldSlot( Object obj, int hash ) {
+        Object[] old = oldElements;
+        for( int i = ((hash * 3) & Integer.MAX_VALUE) % old.length;; i = (i + 1) % old.length ) {
+            Object element = old[i];
+            if( element == null ) {
+                return -1;
             }
+            if( element == obj || ((oldHashes == null || oldHashes[i] == hash) && element.equals( obj )) ) {
+                return i;
+            }
+        }
     }
 
     /**
      * Find the object or free place.
      * 
      * @param obj the new object
+     * @param hash the hash code of the object
      * @return the index to the obj or null
      */
-    private int findSlot( Object obj ) {
-        // We multiply by 3 to add a gap to avoid large clusters if there continue values
-        for( int i = java.lang.Math.abs( obj.hashCode() * 3 ) % elements.length;; i = nextIndex( i ) ) {
-            if( elements[i] == null || elements[i].equals( obj ) ) {
+    private int findSlot( Object obj, int hash ) {
+        for( int i = firstSlot( hash ), distance = 0;; i = nextIndex( i ), distance++ ) {
+            Object element = elements[i];
+            if( element == null || element == obj || ((hashes == null || hashes[i] == hash) && element.equals( obj )) ) {
+                if( HashStatistics.ENABLED ) {
+                    HashStatistics.COMPACT_SET.probe( distance );
+                }
                 return i;
             }
         }
     }
 
+    /**
+     * The first slot of the probe sequence of a hash code.
+     *
+     * @param hash the hash code
+     * @return the index
+     */
+    private int firstSlot( int hash ) {
+        // We multiply by 3 to add a gap to avoid large clusters if there continue values
+        return ((hash * 3) & Integer.MAX_VALUE) % elements.length;
+    }
+
+    /**
+     * The hash code of the element in a slot.
+     *
+     * @param index the slot
+     * @return the cached or calculated hash code
+     */
+    private int hashAt( int index ) {
+        return hashes != null ? hashes[index] : elements[index].hashCode();
+    }
+
     /**
      * The next index rotating
      * 
@@ -127,12 +443,192 @@ private int nextIndex( int index ) {
      */
     @Override
     public Iterator<Object> iterator() {
-        ArrayList<Object> list = new ArrayList<>(size);
-        for( Object obj : elements ) {
-            if( obj != null ) {
-                list.add( obj );
+        finishResize();
+        return new Itr();
+    }
+
+    /**
+     * {@inheritDoc} The spliterator split the table by index ranges. It is not a Spliterator.OfInt because the set can
+     * save any objects. A running incremental resize is finished first.
+     */
+    @Override
+    public Spliterator<Object> spliterator() {
+        finishResize();
+        return new TableSpliterator( 0, elements.length, size, true );
+    }
+
+    /**
+     * Spliterator over an index range of the table.
+     */
+    private class TableSpliterator implements Spliterator<Object> {
+
+        private final Object[] table            = elements;
+
+        private int            index;
+
+        private final int      fence;
+
+        /**
+         * The exact count of values if sized else an estimate.
+         */
+        private long           estimate;
+
+        /**
+         * True, if the count is exact. It is decided on creating and only cleared by a split.
+         */
+        private boolean        sized;
+
+        private final int      expectedModCount = modCount;
+
+        /**
+         * Create a spliterator.
+         *
+         * @param index the first index
+         * @param fence the end index, exclusive
+         * @param estimate the count of values
+         * @param sized true, if the count is exact
+         */
+        TableSpliterator( int index, int fence, long estimate, boolean sized ) {
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.sized = sized;
+        }
+
+        @Override
+        public Spliterator<Object> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if( mid <= index ) {
+                return null;
+            }
+            estimate >>>= 1;
+            TableSpliterator prefix = new TableSpliterator( index, mid, estimate, false );
+            index = mid;
+            sized = false;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance( Consumer<? super Object> action ) {
+            while( index < fence ) {
+                Object obj = table[index++];
+                if( obj != null ) {
+                    action.accept( obj );
+                    if( modCount != expectedModCount ) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if( sized ) {
+                        estimate--;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining( Consumer<? super Object> action ) {
+            for( ; index < fence; index++ ) {
+                Object obj = table[index];
+                if( obj != null ) {
+                    action.accept( obj );
+                }
+            }
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            if( sized ) {
+                estimate = 0;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL | (sized ? SIZED : 0);
+        }
+    }
+
+    /**
+     * Iterator that walk backward over the elements. A remove can move values of a wrapped cluster from the start of
+     * the array to the already visited end. This values are collected and returned at the end.
+     */
+    private class Itr implements Iterator<Object> {
+
+        private int               idx              = elements.length;
+
+        private int               lastIdx          = -1;
+
+        private ArrayList<Object> wrapped;
+
+        private int               wrappedIdx;
+
+        private Object            lastWrappedValue;
+
+        private int               expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            while( idx > 0 ) {
+                if( elements[idx - 1] != null ) {
+                    return true;
+                }
+                idx--;
+            }
+            return wrapped != null && wrappedIdx < wrapped.size();
+        }
+
+        @Override
+        public Object next() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            if( idx > 0 ) {
+                lastIdx = --idx;
+                return elements[idx];
+            }
+            lastIdx = -2;
+            return lastWrappedValue = wrapped.get( wrappedIdx++ );
+        }
+
+        @Override
+        public void remove() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            switch( lastIdx ) {
+                case -1:
+                    throw new IllegalStateException();
+                case -2:
+                    CompactSet.this.remove( lastWrappedValue );
+                    break;
+                default:
+                    elements[lastIdx] = null;
+                    tampCollisions( lastIdx, this );
+                    size--;
+                    modCount++;
+            }
+            lastIdx = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Save a value that was moved from the not visited to the visited part of the array.
+         * 
+         * @param value the value
+         */
+        void addWrapped( Object value ) {
+            if( wrapped == null ) {
+                wrapped = new ArrayList<>();
             }
+            wrapped.add( value );
         }
-        return list.iterator();
     }
 }
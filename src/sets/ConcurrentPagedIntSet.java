@@ -0,0 +1,412 @@
+package sets;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread safe variant of PagedIntSet. The pages are saved in a directory of 2 levels with atomic references, that
+ * there is no global lock. The writes of a page are serialized with a lock of a stripe of pages. The small pages with
+ * sorted arrays or runs are never changed after they are published; a write replace it with a changed copy. Bitmap
+ * pages and hash tables are changed in place because a copy of up to 8 KB per write is too expensive. The reads take no
+ * lock. They use the optimistic read of the StampedLock of the stripe and take only a read lock if a write is running
+ * at the same time. The iteration is weakly consistent and in ascending order. It never throws a
+ * ConcurrentModificationException.
+ */
+public class ConcurrentPagedIntSet extends AbstractSet<Integer> implements IntSet, MemoryFootprint {
+
+    /**
+     * The count of locks. Consecutive pages use different locks.
+     */
+    private static final int                                       STRIPES   = 256;
+
+    /**
+     * The first level of the directory with the high 8 bits of the page key. The second level are created on demand.
+     */
+    private final AtomicReferenceArray<AtomicReferenceArray<Page>> directory = new AtomicReferenceArray<>( 256 );
+
+    private final StampedLock[]                                    locks     = new StampedLock[STRIPES];
+
+    private final LongAdder                                        size      = new LongAdder();
+
+    /**
+     * Create a new empty instance.
+     */
+    public ConcurrentPagedIntSet() {
+        for( int i = 0; i < STRIPES; i++ ) {
+            locks[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( Integer e ) {
+        return add( e.intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( int value ) {
+        int index = index( value );
+        char low = (char)value;
+        StampedLock lock = locks[index & (STRIPES - 1)];
+        long stamp = lock.writeLock();
+        try {
+            Page page = getPage( index );
+            if( page == null ) {
+                setPage( index, new ArrayPage().add( low ) );
+            } else {
+                if( page.contains( low ) ) {
+                    return false;
+                }
+                Page newPage = writable( page ).add( low );
+                if( newPage != page ) {
+                    setPage( index, newPage );
+                }
+            }
+        } finally {
+            lock.unlockWrite( stamp );
+        }
+        size.increment();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( Object o ) {
+        return remove( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( int value ) {
+        int index = index( value );
+        char low = (char)value;
+        StampedLock lock = locks[index & (STRIPES - 1)];
+        long stamp = lock.writeLock();
+        try {
+            Page page = getPage( index );
+            if( page == null || !page.contains( low ) ) {
+                return false;
+            }
+            Page newPage = writable( page ).remove( low );
+            if( newPage.size() == 0 ) {
+                setPage( index, null );
+            } else if( newPage != page ) {
+                setPage( index, newPage );
+            }
+        } finally {
+            lock.unlockWrite( stamp );
+        }
+        size.decrement();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( Object o ) {
+        return contains( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( int value ) {
+        int index = index( value );
+        char low = (char)value;
+        StampedLock lock = locks[index & (STRIPES - 1)];
+        long stamp = lock.tryOptimisticRead();
+        if( stamp != 0 ) {
+            // a hash table that is changed while reading can give a wrong result, but validate() rejects it
+            Page page = getPage( index );
+            boolean result = page != null && page.contains( low );
+            if( lock.validate( stamp ) ) {
+                return result;
+            }
+        }
+        // a write of the stripe is running
+        stamp = lock.readLock();
+        try {
+            Page page = getPage( index );
+            return page != null && page.contains( low );
+        } finally {
+            lock.unlockRead( stamp );
+        }
+    }
+
+    /**
+     * {@inheritDoc} The result is only exact if there are no concurrent writes.
+     */
+    @Override
+    public int size() {
+        return (int)size.sum();
+    }
+
+    /**
+     * {@inheritDoc} The result is only exact if there are no concurrent writes.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        // the set, the locks, the LongAdder without cells and the first level of the directory
+        int ref = MemoryEstimate.REFERENCE;
+        long level = MemoryEstimate.object( ref ) + MemoryEstimate.array( 256, ref );
+        long bytes = MemoryEstimate.object( 3 * ref ) + MemoryEstimate.array( STRIPES, ref )
+                        + STRIPES * MemoryEstimate.object( 5 * ref + 12 ) + MemoryEstimate.object( 16 ) + level;
+        for( int i = 0; i < 256; i++ ) {
+            AtomicReferenceArray<Page> pages = directory.get( i );
+            if( pages != null ) {
+                bytes += level;
+                for( int j = 0; j < 256; j++ ) {
+                    Page page = pages.get( j );
+                    if( page != null ) {
+                        bytes += page.estimatedSizeInBytes();
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+
+    /**
+     * {@inheritDoc} Values that are added concurrently can be in the set after the call.
+     */
+    @Override
+    public void clear() {
+        for( int index = 0; index < 0x10000; index++ ) {
+            if( getPage( index ) != null ) {
+                StampedLock lock = locks[index & (STRIPES - 1)];
+                long stamp = lock.writeLock();
+                try {
+                    Page page = getPage( index );
+                    if( page != null ) {
+                        setPage( index, null );
+                        size.add( -page.size() );
+                    }
+                } finally {
+                    lock.unlockWrite( stamp );
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc} The iterator is weakly consistent and return the values in ascending order.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachInt( IntConsumer action ) {
+        for( Itr iterator = new Itr(); iterator.hasNext(); ) {
+            action.accept( iterator.nextInt() );
+        }
+    }
+
+    /**
+     * {@inheritDoc} The values are sorted.
+     */
+    @Override
+    public int[] toIntArray() {
+        int[] array = new int[size()];
+        int idx = 0;
+        for( Itr iterator = new Itr(); iterator.hasNext(); ) {
+            if( idx == array.length ) {
+                array = Arrays.copyOf( array, java.lang.Math.max( 2 * idx, 16 ) );
+            }
+            array[idx++] = iterator.nextInt();
+        }
+        return idx == array.length ? array : Arrays.copyOf( array, idx );
+    }
+
+    /**
+     * The index of the page of a value in the directory. The order of the indexes is the order of the values.
+     *
+     * @param value the value
+     * @return the index in the range 0 - 65535
+     */
+    private static int index( int value ) {
+        return (value >>> 16) ^ 0x8000;
+    }
+
+    /**
+     * Get a page of the directory.
+     *
+     * @param index the index of the page
+     * @return the page or null
+     */
+    private Page getPage( int index ) {
+        AtomicReferenceArray<Page> pages = directory.get( index >>> 8 );
+        return pages == null ? null : pages.get( index & 0xFF );
+    }
+
+    /**
+     * Publish a page in the directory. The caller must hold the write lock of the stripe.
+     *
+     * @param index the index of the page
+     * @param page the page or null
+     */
+    private void setPage( int index, Page page ) {
+        AtomicReferenceArray<Page> pages = directory.get( index >>> 8 );
+        if( pages == null ) {
+            if( page == null ) {
+                return;
+            }
+            directory.compareAndSet( index >>> 8, null, new AtomicReferenceArray<Page>( 256 ) );
+            pages = directory.get( index >>> 8 );
+        }
+        pages.set( index & 0xFF, page );
+    }
+
+    /**
+     * Get a page that can be changed without disturbing the lock free readers.
+     *
+     * @param page the published page
+     * @return the page self for a bitmap or hash table else a copy
+     */
+    private static Page writable( Page page ) {
+        return isChangedInPlace( page ) ? page : page.copy();
+    }
+
+    /**
+     * If the writes change the page self instead of a copy. Such pages can only be read under the lock of the stripe or
+     * with a validated optimistic read.
+     *
+     * @param page the page
+     * @return true, for a bitmap or hash table
+     */
+    private static boolean isChangedInPlace( Page page ) {
+        return page instanceof BitmapPage || page instanceof HashPage;
+    }
+
+    /**
+     * Get a sorted copy of the values of a page. Only bitmap pages and hash tables can be changed while copying, that
+     * they are copied under the read lock.
+     *
+     * @param index the index of the page
+     * @return the values or null if there is no page
+     */
+    private char[] sortedValues( int index ) {
+        Page page = getPage( index );
+        if( !isChangedInPlace( page ) ) {
+            return page == null ? null : page.toSortedArray();
+        }
+        StampedLock lock = locks[index & (STRIPES - 1)];
+        long stamp = lock.readLock();
+        try {
+            page = getPage( index );
+            return page == null ? null : page.toSortedArray();
+        } finally {
+            lock.unlockRead( stamp );
+        }
+    }
+
+    /**
+     * Weakly consistent iterator over the pages in ascending order. Every page is iterated as a snapshot.
+     */
+    private class Itr implements Iterator<Integer> {
+
+        /**
+         * The index of the next page.
+         */
+        private int     index;
+
+        private int     high;
+
+        private char[]  values;
+
+        private int     pos;
+
+        private int     lastValue;
+
+        private boolean canRemove;
+
+        @Override
+        public boolean hasNext() {
+            while( values == null || pos >= values.length ) {
+                if( !nextPage() ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        /**
+         * The next value without boxing.
+         *
+         * @return the value
+         */
+        int nextInt() {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            lastValue = high | values[pos++];
+            canRemove = true;
+            return lastValue;
+        }
+
+        @Override
+        public void remove() {
+            if( !canRemove ) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            ConcurrentPagedIntSet.this.remove( lastValue );
+        }
+
+        /**
+         * Take the snapshot of the next existing page.
+         *
+         * @return false, if there are no more pages
+         */
+        private boolean nextPage() {
+            for( ; index < 0x10000; index++ ) {
+                if( directory.get( index >>> 8 ) == null ) {
+                    index |= 0xFF; // skip the empty block
+                    continue;
+                }
+                values = sortedValues( index );
+                if( values != null ) {
+                    high = (index ^ 0x8000) << 16;
+                    pos = 0;
+                    index++;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
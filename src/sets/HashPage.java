@@ -0,0 +1,387 @@
+package sets;
+
+/**
+ * A page for a middle count of values. The values are saved in a hash table of chars. If it thins out then it will be
+ * replaced with an ArrayPage. If the table would be larger as a BitmapPage then it will be replaced with a BitmapPage.
+ * If the values are long runs then it will be replaced with a RunPage. The table uses the same Robin Hood hashing with
+ * backward shift deletion like IntCompactSet. An empty slot is 0, the value 0 self is saved in a flag at the position
+ * after the table.
+ */
+class HashPage extends Page {
+
+    private static final float LOAD_FACTOR   = 0.875f;
+
+    /**
+     * 2^32 divided by the golden ratio.
+     */
+    private static final int   PHI           = 0x9E3779B9;
+
+    /**
+     * The maximum capacity of the table. 4096 chars need the same memory like the bitmap of a BitmapPage.
+     */
+    static final int           MAX_CAPACITY  = 4096;
+
+    private char[]             elements;
+
+    /**
+     * 32 - log2( elements.length ), the shift for the hash.
+     */
+    private int                shift;
+
+    private int                size;
+
+    private boolean            hasZero;
+
+    /**
+     * Create a new instance.
+     */
+    HashPage() {
+        this( 4 );
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param capacity the minimum initial capacity of the table, it is rounded up to a power of 2
+     */
+    HashPage( int capacity ) {
+        capacity = Integer.highestOneBit( java.lang.Math.max( capacity, 4 ) - 1 ) << 1;
+        elements = new char[capacity];
+        shift = Integer.numberOfLeadingZeros( capacity ) + 1;
+    }
+
+    /**
+     * Create a hash page with the values of another page.
+     *
+     * @param page the source
+     */
+    HashPage( Page page ) {
+        this( (int)(page.size() / LOAD_FACTOR) + 2 );
+        for( int pos = page.nextPosition( 0 ); pos >= 0; pos = page.nextPosition( pos + 1 ) ) {
+            add( page.valueAt( pos ) );
+        }
+    }
+
+    /**
+     * Create a hash page with the values of an array.
+     *
+     * @param values the values
+     * @param count the count of values in the array
+     */
+    HashPage( char[] values, int count ) {
+        this( (int)(count / LOAD_FACTOR) + 2 );
+        for( int i = 0; i < count; i++ ) {
+            add( values[i] );
+        }
+    }
+
+    /**
+     * Create a copy.
+     *
+     * @param page the source
+     */
+    private HashPage( HashPage page ) {
+        elements = page.elements.clone();
+        shift = page.shift;
+        size = page.size;
+        hasZero = page.hasZero;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page add( char obj ) {
+        if( obj == 0 ) {
+            if( !hasZero ) {
+                hasZero = true;
+                size++;
+            }
+            return this;
+        }
+        if( findSlot( obj ) >= 0 ) {
+            return this;
+        }
+        if( tableSize() + 1 > LOAD_FACTOR * elements.length ) {
+            if( runCount() * 4 <= elements.length ) {
+                // the runs need not more as the half of the current table
+                return new RunPage( this ).add( obj );
+            }
+            if( 2 * elements.length > MAX_CAPACITY ) {
+                return new BitmapPage( this ).add( obj );
+            }
+            resize( 2 * elements.length );
+        }
+        insert( obj );
+        size++;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page remove( char obj ) {
+        if( obj == 0 ) {
+            if( !hasZero ) {
+                return this;
+            }
+            hasZero = false;
+        } else {
+            int slot = findSlot( obj );
+            if( slot < 0 ) {
+                return this;
+            }
+            shiftBack( slot );
+        }
+        size--;
+        if( size < ArrayPage.MAX_SIZE / 2 ) {
+            return new ArrayPage( this );
+        }
+        if( tableSize() < elements.length / 4 ) {
+            // the new table is filled up to the half, that alternating adds and removes can not resize every time
+            resize( elements.length / 2 );
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean contains( char o ) {
+        return o == 0 ? hasZero : findSlot( o ) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc} The position after the table is the value 0.
+     */
+    @Override
+    int nextPosition( int pos ) {
+        for( ; pos < elements.length; pos++ ) {
+            if( elements[pos] != 0 ) {
+                return pos;
+            }
+        }
+        return pos == elements.length && hasZero ? pos : -1;
+    }
+
+    /**
+     * {@inheritDoc} The values of the hash table are not sorted, that all slots must be scanned.
+     */
+    @Override
+    int ceilingPosition( int value ) {
+        if( hasZero && value <= 0 ) {
+            return elements.length;
+        }
+        int result = -1;
+        for( int i = 0; i < elements.length; i++ ) {
+            char obj = elements[i];
+            if( obj != 0 && obj >= value && (result < 0 || obj < elements[result]) ) {
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc} The values of the hash table are not sorted, that all slots must be scanned.
+     */
+    @Override
+    int floor( int value ) {
+        int result = hasZero && value >= 0 ? 0 : -1;
+        for( char obj : elements ) {
+            if( obj != 0 && obj <= value && obj > result ) {
+                result = obj;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char valueAt( int pos ) {
+        return pos == elements.length ? 0 : elements[pos];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page copy() {
+        return new HashPage( this );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    long estimatedSizeInBytes() {
+        return MemoryEstimate.object( 2 + MemoryEstimate.REFERENCE + 8 ) + MemoryEstimate.array( elements.length, 2 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int slackInBytes() {
+        return (elements.length - tableSize()) * 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean isSorted() {
+        return false;
+    }
+
+    /**
+     * Estimate the memory of a hash page with the given count of values.
+     *
+     * @param size the count of values
+     * @return the size of the table in bytes
+     */
+    static int sizeInBytes( int size ) {
+        return Integer.highestOneBit( java.lang.Math.max( (int)(size / LOAD_FACTOR) + 1, 4 ) - 1 ) << 2;
+    }
+
+    /**
+     * Count the runs of consecutive values. A value is the start of a run if the previous value is not in the page.
+     *
+     * @return the count of runs
+     */
+    private int runCount() {
+        int count = 0;
+        for( char value : elements ) {
+            if( value != 0 && !contains( (char)(value - 1) ) ) {
+                count++;
+            }
+        }
+        return hasZero ? count + 1 : count;
+    }
+
+    /**
+     * The count of values in the table without the value 0.
+     *
+     * @return the count
+     */
+    private int tableSize() {
+        return hasZero ? size - 1 : size;
+    }
+
+    /**
+     * Delete a slot and shift the following values of the cluster back, that there is no gap in the cluster.
+     *
+     * @param index the slot to delete
+     */
+    private void shiftBack( int index ) {
+        int mask = elements.length - 1;
+        int i = index;
+        for( int next = (i + 1) & mask;; i = next, next = (i + 1) & mask ) {
+            char obj = elements[next];
+            if( obj == 0 || hash( obj ) == next ) {
+                break;
+            }
+            elements[i] = obj;
+        }
+        elements[i] = 0;
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.HASH_PAGE.moved( (i - index) & mask );
+        }
+    }
+
+    /**
+     * Resize the table.
+     *
+     * @param capacity the new capacity, a power of 2
+     */
+    private void resize( int capacity ) {
+        long start = HashStatistics.ENABLED ? System.nanoTime() : 0;
+        char[] oldElements = elements;
+        elements = new char[capacity];
+        shift = Integer.numberOfLeadingZeros( capacity ) + 1;
+        for( char obj : oldElements ) {
+            if( obj != 0 ) {
+                insert( obj );
+            }
+        }
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.HASH_PAGE.resized( System.nanoTime() - start );
+        }
+    }
+
+    /**
+     * The home slot of a value.
+     *
+     * @param obj the value
+     * @return the index
+     */
+    private int hash( int obj ) {
+        return (obj * PHI) >>> shift;
+    }
+
+    /**
+     * Find the slot of a value. The search stops at an empty slot or at a value that is nearer to its home slot as
+     * the searched value would be.
+     *
+     * @param obj the value
+     * @return the index of the value or -1 if not found
+     */
+    private int findSlot( int obj ) {
+        // the table is read once and the hash is masked, that an optimistic read of ConcurrentPagedIntSet during a
+        // resize returns a wrong result instead of an exception
+        char[] table = elements;
+        int mask = table.length - 1;
+        int distance = 0;
+        int slot;
+        for( int i = hash( obj ) & mask;; i = (i + 1) & mask, distance++ ) {
+            char element = table[i];
+            if( element == 0 || ((i - hash( element )) & mask) < distance ) {
+                slot = -1;
+                break;
+            }
+            if( element == obj ) {
+                slot = i;
+                break;
+            }
+        }
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.HASH_PAGE.probe( distance );
+        }
+        return slot;
+    }
+
+    /**
+     * Insert a value that is not in the table. A value that is nearer to its home slot is displaced and inserted
+     * further.
+     *
+     * @param obj the value
+     */
+    private void insert( char obj ) {
+        int mask = elements.length - 1;
+        for( int i = hash( obj ), distance = 0;; i = (i + 1) & mask, distance++ ) {
+            char element = elements[i];
+            if( element == 0 ) {
+                elements[i] = obj;
+                return;
+            }
+            int elementDistance = (i - hash( element )) & mask;
+            if( elementDistance < distance ) {
+                elements[i] = obj;
+                obj = element;
+                distance = elementDistance;
+            }
+        }
+    }
+}
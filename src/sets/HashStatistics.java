@@ -0,0 +1,225 @@
+package sets;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional counters of the hash tables of IntCompactSet, CompactSet and HashPage. They show if a set is slow because of
+ * a bad distribution of the hash codes (long probe sequences) or because of its capacity (many resizes). The counters
+ * are only recorded if the JVM is started with -Dsets.hashStatistics=true. Else the JIT removes the instrumentation
+ * because ENABLED is a constant. The counters are global per implementation and thread safe.
+ */
+public final class HashStatistics {
+
+    /**
+     * If the counters are recorded.
+     */
+    public static final boolean        ENABLED         = Boolean.getBoolean( "sets.hashStatistics" );
+
+    public static final HashStatistics INT_COMPACT_SET = new HashStatistics( "IntCompactSet" );
+
+    public static final HashStatistics COMPACT_SET     = new HashStatistics( "CompactSet" );
+
+    public static final HashStatistics HASH_PAGE       = new HashStatistics( "HashPage" );
+
+    private final String               name;
+
+    /**
+     * The entry 0 counts probe length 0, the entry i the probe lengths from 2^(i-1) to 2^i - 1.
+     */
+    private final LongAdder[]          probeLengths    = new LongAdder[33];
+
+    private final LongAdder            resizes         = new LongAdder();
+
+    private final LongAdder            resizeNanos     = new LongAdder();
+
+    private final LongAdder            movedElements   = new LongAdder();
+
+    /**
+     * Create a new instance.
+     *
+     * @param name the name of the implementation
+     */
+    private HashStatistics( String name ) {
+        this.name = name;
+        for( int i = 0; i < probeLengths.length; i++ ) {
+            probeLengths[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record the probe length of a lookup.
+     *
+     * @param length the count of slots after the home slot that was compared
+     */
+    void probe( int length ) {
+        probeLengths[32 - Integer.numberOfLeadingZeros( length )].increment();
+    }
+
+    /**
+     * Record a resize of a table.
+     *
+     * @param nanos the duration
+     */
+    void resized( long nanos ) {
+        resizes.increment();
+        resizeNanos.add( nanos );
+    }
+
+    /**
+     * Record the values that are moved in a table after a remove.
+     *
+     * @param count the count of values
+     */
+    void moved( int count ) {
+        if( count > 0 ) {
+            movedElements.add( count );
+        }
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public void reset() {
+        for( LongAdder adder : probeLengths ) {
+            adder.reset();
+        }
+        resizes.reset();
+        resizeNanos.reset();
+        movedElements.reset();
+    }
+
+    /**
+     * Take a snapshot of the current counters. Concurrent updates can be partly included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] histogram = new long[probeLengths.length];
+        for( int i = 0; i < histogram.length; i++ ) {
+            histogram[i] = probeLengths[i].sum();
+        }
+        return new Snapshot( name, histogram, resizes.sum(), resizeNanos.sum(), movedElements.sum() );
+    }
+
+    /**
+     * The values of the counters at a point in time.
+     */
+    public static class Snapshot {
+
+        private final String name;
+
+        private final long[] probeLengthHistogram;
+
+        private final long   resizeCount;
+
+        private final long   resizeNanos;
+
+        private final long   movedElements;
+
+        /**
+         * Create a snapshot.
+         *
+         * @param name the name of the implementation
+         * @param probeLengthHistogram the histogram of the probe lengths
+         * @param resizeCount the count of resizes
+         * @param resizeNanos the time of all resizes
+         * @param movedElements the count of moved values after a remove
+         */
+        Snapshot( String name, long[] probeLengthHistogram, long resizeCount, long resizeNanos, long movedElements ) {
+            this.name = name;
+            this.probeLengthHistogram = probeLengthHistogram;
+            this.resizeCount = resizeCount;
+            this.resizeNanos = resizeNanos;
+            this.movedElements = movedElements;
+        }
+
+        /**
+         * The name of the implementation.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The histogram of the probe lengths of the lookups. The entry 0 counts the lookups that found the value or
+         * an empty slot at the home slot, the entry i the probe lengths from 2^(i-1) to 2^i - 1.
+         *
+         * @return a copy of the histogram with 33 entries
+         */
+        public long[] getProbeLengthHistogram() {
+            return probeLengthHistogram.clone();
+        }
+
+        /**
+         * The count of lookups.
+         *
+         * @return the count
+         */
+        public long getLookupCount() {
+            long count = 0;
+            for( long value : probeLengthHistogram ) {
+                count += value;
+            }
+            return count;
+        }
+
+        /**
+         * The count of resizes of the tables.
+         *
+         * @return the count
+         */
+        public long getResizeCount() {
+            return resizeCount;
+        }
+
+        /**
+         * The time of all resizes.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getResizeNanos() {
+            return resizeNanos;
+        }
+
+        /**
+         * The count of values that are moved after a remove to close the gap in a cluster.
+         *
+         * @return the count
+         */
+        public long getMovedElements() {
+            return movedElements;
+        }
+
+        /**
+         * The values as flat map for metric systems. The keys start with the name of the implementation. A
+         * probe length entry has the inclusive upper limit of its range as suffix, for example
+         * "IntCompactSet.probeLength.le7". Empty entries of the histogram are omitted.
+         *
+         * @return the map
+         */
+        public Map<String, Long> toMap() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for( int i = 0; i < probeLengthHistogram.length; i++ ) {
+                if( probeLengthHistogram[i] != 0 ) {
+                    map.put( name + ".probeLength.le" + ((1L << i) - 1), probeLengthHistogram[i] );
+                }
+            }
+            map.put( name + ".resizeCount", resizeCount );
+            map.put( name + ".resizeNanos", resizeNanos );
+            map.put( name + ".movedElements", movedElements );
+            return map;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
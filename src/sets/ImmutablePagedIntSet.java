@@ -0,0 +1,435 @@
+package sets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A read only set on the binary format of PagedIntSet.write(). The values are read directly from the buffer without
+ * creating pages. If the buffer is a memory mapped file then there is nearly no startup time and multiple processes can
+ * share the file over the page cache of the operating system.
+ */
+public class ImmutablePagedIntSet extends AbstractSet<Integer> implements IntSet, MemoryFootprint {
+
+    private final ByteBuffer buffer;
+
+    private final int        pageCount;
+
+    private final int        size;
+
+    /**
+     * Create a set on the data of a buffer. The content of the buffer must not be changed. The payload of bitmap and
+     * run pages is read once to check the count of values.
+     *
+     * @param buffer the data, starting at the current position of the buffer
+     * @throws IOException if the data are not a valid set
+     */
+    public ImmutablePagedIntSet( ByteBuffer buffer ) throws IOException {
+        this.buffer = buffer.slice().order( ByteOrder.BIG_ENDIAN );
+        if( this.buffer.limit() < PagedIntSet.HEADER_LENGTH ) {
+            throw new IOException( "No PagedIntSet data" );
+        }
+        pageCount = PagedIntSet.readHeader( this.buffer.getInt( 0 ), this.buffer.getInt( 4 ), this.buffer.getInt( 8 ) );
+        size = this.buffer.getInt( 12 );
+        int count = 0;
+        for( int i = 0; i < pageCount; i++ ) {
+            int entry = PagedIntSet.HEADER_LENGTH + i * PagedIntSet.ENTRY_LENGTH;
+            if( entry + PagedIntSet.ENTRY_LENGTH > this.buffer.limit() || (i > 0 && key( i - 1 ) >= key( i )) ) {
+                throw new IOException( "Invalid page directory" );
+            }
+            if( count( i ) <= 0 || count( i ) > 0x10000 || payloadEnd( i ) > this.buffer.limit()
+                            || payloadCount( i ) != count( i ) ) {
+                // a truncated or corrupt page would fail later on reading or report a wrong size
+                throw new IOException( "Invalid page " + i );
+            }
+            count += count( i );
+        }
+        if( count != size ) {
+            throw new IOException( "Invalid size: " + size );
+        }
+    }
+
+    /**
+     * Map a file that was written with PagedIntSet.write(). The file must not be changed while the set is used.
+     *
+     * @param file the file
+     * @return the set
+     * @throws IOException if any I/O error occur or the file is not a valid set
+     */
+    public static ImmutablePagedIntSet open( Path file ) throws IOException {
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            // the mapping is valid after closing the channel
+            return new ImmutablePagedIntSet( channel.map( MapMode.READ_ONLY, 0, channel.size() ) );
+        }
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean add( int value ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean remove( int value ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean remove( Object o ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( Object o ) {
+        return o instanceof Integer && contains( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( int value ) {
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
+            return false;
+        }
+        int offset = offset( idx );
+        char low = (char)value;
+        switch( type( idx ) ) {
+            case Page.FORMAT_ARRAY:
+                return findChar( offset, 2, count( idx ), low ) >= 0;
+            case Page.FORMAT_BITMAP:
+                return (buffer.getLong( offset + (low >>> 6) * 8 ) & (1L << low)) != 0;
+            default:
+                int runIdx = findChar( offset + 2, 4, buffer.getChar( offset ), low );
+                if( runIdx >= 0 ) {
+                    return true;
+                }
+                // the run with the largest start value that is lower as the value
+                runIdx = -runIdx - 2;
+                int run = offset + 2 + 4 * runIdx;
+                return runIdx >= 0 && low - buffer.getChar( run ) <= buffer.getChar( run + 2 );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc} The bytes of the buffer are included also if the buffer is a mapped file and not heap memory.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        return MemoryEstimate.object( MemoryEstimate.REFERENCE + 8 ) + MemoryEstimate.object( 64 ) + buffer.capacity();
+    }
+
+    /**
+     * {@inheritDoc} The values are iterated in ascending order.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachInt( IntConsumer action ) {
+        for( Itr iterator = new Itr(); iterator.hasNext(); ) {
+            action.accept( iterator.nextInt() );
+        }
+    }
+
+    /**
+     * {@inheritDoc} The values are sorted.
+     */
+    @Override
+    public int[] toIntArray() {
+        int[] array = new int[size];
+        int idx = 0;
+        for( Itr iterator = new Itr(); iterator.hasNext(); ) {
+            array[idx++] = iterator.nextInt();
+        }
+        return array;
+    }
+
+    private int key( int idx ) {
+        return buffer.getShort( PagedIntSet.HEADER_LENGTH + idx * PagedIntSet.ENTRY_LENGTH );
+    }
+
+    private int type( int idx ) {
+        return buffer.get( PagedIntSet.HEADER_LENGTH + idx * PagedIntSet.ENTRY_LENGTH + 2 );
+    }
+
+    private int count( int idx ) {
+        return buffer.getInt( PagedIntSet.HEADER_LENGTH + idx * PagedIntSet.ENTRY_LENGTH + 4 );
+    }
+
+    private int offset( int idx ) {
+        return buffer.getInt( PagedIntSet.HEADER_LENGTH + idx * PagedIntSet.ENTRY_LENGTH + 8 );
+    }
+
+    /**
+     * The end of the payload of a page.
+     *
+     * @param idx the index of the page
+     * @return the offset after the payload or Long.MAX_VALUE if the type or offset is invalid
+     */
+    private long payloadEnd( int idx ) {
+        long offset = offset( idx );
+        if( offset < PagedIntSet.payloadOffset( pageCount ) ) {
+            return Long.MAX_VALUE;
+        }
+        switch( type( idx ) ) {
+            case Page.FORMAT_ARRAY:
+                return offset + 2L * count( idx );
+            case Page.FORMAT_BITMAP:
+                return offset + BitmapPage.SIZE_IN_BYTES;
+            case Page.FORMAT_RUN:
+                if( offset + 2 > buffer.limit() ) {
+                    return Long.MAX_VALUE;
+                }
+                return offset + 2 + 4L * buffer.getChar( (int)offset );
+            default:
+                return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Count the values in the payload of a page. The payload must be inside of the buffer.
+     *
+     * @param idx the page index
+     * @return the count of values
+     */
+    private int payloadCount( int idx ) {
+        int offset = offset( idx );
+        switch( type( idx ) ) {
+            case Page.FORMAT_BITMAP:
+                int bits = 0;
+                for( int i = 0; i < BitmapPage.SIZE_IN_BYTES; i += 8 ) {
+                    bits += Long.bitCount( buffer.getLong( offset + i ) );
+                }
+                return bits;
+            case Page.FORMAT_RUN:
+                int values = 0;
+                for( int i = 0, runCount = buffer.getChar( offset ); i < runCount; i++ ) {
+                    values += buffer.getChar( offset + 4 + 4 * i ) + 1;
+                }
+                return values;
+            default:
+                return count( idx );
+        }
+    }
+
+    /**
+     * Find the page with a binary search in the directory.
+     *
+     * @param key the high 16 bits of the value
+     * @return the index of the page or a negative value if there is no page
+     */
+    private int findPage( int key ) {
+        int low = 0;
+        int high = pageCount - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            int midKey = key( mid );
+            if( midKey < key ) {
+                low = mid + 1;
+            } else if( midKey > key ) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Binary search of a char in sorted chars of the buffer.
+     *
+     * @param offset the offset of the first char
+     * @param stride the distance between 2 chars in bytes
+     * @param count the count of chars
+     * @param value the searched value
+     * @return the index of the value or (-(insertion point) - 1)
+     */
+    private int findChar( int offset, int stride, int count, char value ) {
+        int low = 0;
+        int high = count - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            char midValue = buffer.getChar( offset + mid * stride );
+            if( midValue < value ) {
+                low = mid + 1;
+            } else if( midValue > value ) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Iterator over the pages of the buffer in ascending order.
+     */
+    private class Itr implements Iterator<Integer> {
+
+        private int  pageIdx = -1;
+
+        private int  high;
+
+        private int  type    = Page.FORMAT_ARRAY;
+
+        private int  offset;
+
+        /**
+         * The count of values of an array or the count of runs.
+         */
+        private int  count;
+
+        /**
+         * The index of the next value, word or run.
+         */
+        private int  pos;
+
+        /**
+         * The not iterated bits of the current word of a bitmap.
+         */
+        private long word;
+
+        /**
+         * The next value of the current run.
+         */
+        private int  runValue = 1;
+
+        /**
+         * The last value of the current run.
+         */
+        private int  runEnd;
+
+        private long next    = PagedIntSet.NO_VALUE;
+
+        Itr() {
+            fetch();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() {
+            return next != PagedIntSet.NO_VALUE;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        /**
+         * Get the next value without boxing.
+         *
+         * @return the next value
+         */
+        int nextInt() {
+            if( next == PagedIntSet.NO_VALUE ) {
+                throw new NoSuchElementException();
+            }
+            int value = (int)next;
+            fetch();
+            return value;
+        }
+
+        /**
+         * Find the next value and move to the next page if needed.
+         */
+        private void fetch() {
+            for( ;; ) {
+                int low = nextInPage();
+                if( low >= 0 ) {
+                    next = high | low;
+                    return;
+                }
+                if( ++pageIdx >= pageCount ) {
+                    next = PagedIntSet.NO_VALUE;
+                    return;
+                }
+                high = key( pageIdx ) << 16;
+                type = type( pageIdx );
+                offset = offset( pageIdx );
+                count = type == Page.FORMAT_RUN ? buffer.getChar( offset ) : count( pageIdx );
+                pos = 0;
+                word = 0;
+                runValue = 1;
+                runEnd = 0;
+            }
+        }
+
+        /**
+         * Get the next value of the current page.
+         *
+         * @return the low 16 bits or -1 if there are no more values
+         */
+        private int nextInPage() {
+            switch( type ) {
+                case Page.FORMAT_ARRAY:
+                    return pos < count ? buffer.getChar( offset + 2 * pos++ ) : -1;
+                case Page.FORMAT_BITMAP:
+                    while( word == 0 ) {
+                        if( pos >= 1024 ) {
+                            return -1;
+                        }
+                        word = buffer.getLong( offset + 8 * pos++ );
+                    }
+                    int bit = Long.numberOfTrailingZeros( word );
+                    word &= word - 1;
+                    return ((pos - 1) << 6) + bit;
+                default:
+                    if( runValue > runEnd ) {
+                        if( pos >= count ) {
+                            return -1;
+                        }
+                        runValue = buffer.getChar( offset + 2 + 4 * pos );
+                        runEnd = runValue + buffer.getChar( offset + 4 + 4 * pos );
+                        pos++;
+                    }
+                    return runValue++;
+            }
+        }
+    }
+}
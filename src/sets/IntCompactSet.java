@@ -1,31 +1,112 @@
 package sets;
 
 import java.util.AbstractSet;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 
 /**
- * A low memory set for integer values. The values are saved in a int array. 
- * If 2 values need to put on the same place in the array it will be put on the next free position of the cluster.
+ * A low memory set for integer values. The values are saved in a int array with a size of a power of 2. The hash is a
+ * multiplication with the golden ratio (Fibonacci hashing). Collisions are resolved with Robin Hood hashing: a new
+ * value takes the place of a value that is nearer to its home slot, that all probe lengths are similar. A remove shift
+ * the following values of the cluster back instead of searching them again. An empty slot is 0, the value 0 self is
+ * saved in a flag, that there is no special value that needs a remap of the table.
+ * <p>
+ * With an incremental resize the old table is kept after a resize and every add and remove move some clusters of it
+ * into the new table, that a single add never rehash all values. The lookups search both tables until the old table
+ * is empty.
  */
-public class IntCompactSet extends AbstractSet<Integer> {
+public class IntCompactSet extends AbstractSet<Integer> implements IntSet, MemoryFootprint {
 
-    private static final float LOAD_FACTOR   = 0.75f;
+    /**
+     * The Robin Hood hashing has short probe lengths also with a high load factor.
+     */
+    private static final float LOAD_FACTOR   = 0.875f;
+
+    /**
+     * 2^32 divided by the golden ratio.
+     */
+    private static final int   PHI           = 0x9E3779B9;
 
-    private static final float RESIZE_FACTOR = 1.5f;
+    /**
+     * The count of slots of the old table that are migrated on every add and remove of an incremental resize. The old
+     * table is empty long before the new table is full.
+     */
+    private static final int   MIGRATE_SLOTS = 8;
 
-    private int[]              elements      = new int[3];
+    private int[]              elements;
+
+    /**
+     * 32 - log2( elements.length ), the shift for the hash.
+     */
+    private int                shift;
 
     private int                size;
 
-    private int                notSetValue   = Integer.MAX_VALUE - 42;
+    private boolean            hasZero;
+
+    private int                modCount;
+
+    /**
+     * The table is not shrunk below this capacity.
+     */
+    private int                minCapacity;
+
+    private final boolean      incrementalResize;
 
     /**
-     * Create a new instance.
+     * The table before an incremental resize or null if all values are migrated.
+     */
+    private int[]              oldElements;
+
+    private int                oldShift;
+
+    /**
+     * The count of values in the old table.
+     */
+    private int                oldCount;
+
+    /**
+     * The next slot of the old table that is migrated. The slots before are empty.
+     */
+    private int                migrateIndex;
+
+    /**
+     * Create a new empty instance.
      */
     public IntCompactSet() {
-        Arrays.fill( elements, notSetValue );
+        this( 0 );
+    }
+
+    /**
+     * Create a new instance with a table for the expected count of values. The table is not shrunk below this size
+     * until trimToSize() is called.
+     *
+     * @param expectedSize the expected count of values
+     */
+    public IntCompactSet( int expectedSize ) {
+        this( expectedSize, false );
+    }
+
+    /**
+     * Create a new instance with a table for the expected count of values. The table is not shrunk below this size
+     * until trimToSize() is called.
+     *
+     * @param expectedSize the expected count of values
+     * @param incrementalResize true, if the values are moved to a resized table over the following adds and removes
+     *            instead of all at once
+     */
+    public IntCompactSet( int expectedSize, boolean incrementalResize ) {
+        this.incrementalResize = incrementalResize;
+        if( expectedSize < 0 ) {
+            throw new IllegalArgumentException( "expectedSize: " + expectedSize );
+        }
+        allocate( capacityFor( expectedSize ) );
+        // the rounded capacity, else a smaller table would be the same size and every remove would resize
+        minCapacity = elements.length;
     }
 
     /**
@@ -33,52 +114,149 @@ public IntCompactSet() {
      */
     @Override
     public boolean add( Integer obj ) {
-        if( obj == notSetValue ) {
-            // collision
-            int newNotSet = notSetValue-1;
-            while( contains( newNotSet) ) newNotSet--;
-            for( int i = 0; i < elements.length; i++ ) {
-                if( elements[i] == notSetValue ) {
-                    elements[i] = newNotSet;
-                }
+        return add( obj.intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( int obj ) {
+        if( obj == 0 ) {
+            if( hasZero ) {
+                return false;
+            }
+            hasZero = true;
+        } else {
+            if( findSlot( obj ) >= 0 || (oldElements != null && findSlot( oldElements, oldShift, obj ) >= 0) ) {
+                return false;
+            }
+            if( tableSize() + 1 > LOAD_FACTOR * elements.length ) {
+                resize( 2 * elements.length );
+            }
+            insert( obj );
+            if( oldElements != null ) {
+                migrate( MIGRATE_SLOTS );
             }
-            notSetValue = newNotSet;
-        }
-        int slot = findSlot( obj );
-        if( elements[slot] != notSetValue ) {
-            return false;
-        }
-        if( (size + 1) >= (LOAD_FACTOR * elements.length) ) {
-            resize();
-            slot = findSlot( obj );
         }
-        elements[slot] = obj;
         size++;
+        modCount++;
         return true;
     }
 
+    /**
+     * {@inheritDoc} The table is resized at most once before the values are added.
+     */
+    @Override
+    public boolean addAll( int[] values, int off, int len ) {
+        int capacity = capacityFor( tableSize() + len );
+        if( capacity > elements.length ) {
+            // rounded up to a power of 2 by resize()
+            resize( capacity );
+        }
+        boolean changed = false;
+        for( int i = off; i < off + len; i++ ) {
+            changed |= add( values[i] );
+        }
+        return changed;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean remove( Object obj ) {
-        int slot = findSlot( (Integer)obj );
-        if( elements[slot] == notSetValue ) {
-            return false;
+        return remove( ((Integer)obj).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( int obj ) {
+        if( obj == 0 ) {
+            if( !hasZero ) {
+                return false;
+            }
+            hasZero = false;
+        } else {
+            int slot = findSlot( obj );
+            if( slot < 0 && oldElements != null ) {
+                int oldSlot = findSlot( oldElements, oldShift, obj );
+                if( oldSlot >= 0 ) {
+                    // a remove in the old table would move values before the migrate index, move the cluster first
+                    migrateCluster( oldSlot );
+                    slot = findSlot( obj );
+                }
+            }
+            if( slot < 0 ) {
+                return false;
+            }
+            shiftBack( slot, null );
+            if( oldElements != null ) {
+                migrate( MIGRATE_SLOTS );
+            }
         }
-        elements[slot] = notSetValue;
-        tampCollisions( slot );
         size--;
+        modCount++;
+        if( obj != 0 && oldElements == null ) {
+            shrink();
+        }
         return true;
     }
 
+    /**
+     * Reduce the table to the smallest capacity for the current values. Also the capacity of the constructor is
+     * released.
+     */
+    public void trimToSize() {
+        minCapacity = 0;
+        int capacity = capacityFor( tableSize() );
+        if( capacity <= elements.length / 2 ) {
+            resize( capacity );
+            finishResize(); // release the old table now
+            modCount++;
+        }
+    }
+
+    /**
+     * Halve the table if it is filled less as a quarter. The new table is filled up to the half, that alternating adds
+     * and removes can not resize the table every time.
+     */
+    private void shrink() {
+        int count = tableSize();
+        if( count < elements.length / 4 && elements.length > minCapacity ) {
+            resize( java.lang.Math.max( 2 * count, minCapacity ) );
+        }
+    }
+
+    /**
+     * The minimum capacity of a table for the count of values without a resize.
+     *
+     * @param count the count of values
+     * @return the capacity, it is not a power of 2
+     */
+    private static int capacityFor( int count ) {
+        return (int)(count / LOAD_FACTOR) + 1;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean contains( Object o ) {
-        int slot = findSlot( (Integer)o );
-        return elements[slot] != notSetValue;
+        return contains( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( int o ) {
+        if( o == 0 ) {
+            return hasZero;
+        }
+        return findSlot( o ) >= 0 || (oldElements != null && findSlot( oldElements, oldShift, o ) >= 0);
     }
 
     /**
@@ -90,71 +268,484 @@ public int size() {
     }
 
     /**
-     * Remove possible collisions after a delete.
-     * 
-     * @param index the start index (position of delete)
+     * {@inheritDoc}
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        long bytes = MemoryEstimate.object( 2 * MemoryEstimate.REFERENCE + 30 ) + MemoryEstimate.array( elements.length, 4 );
+        return oldElements == null ? bytes : bytes + MemoryEstimate.array( oldElements.length, 4 );
+    }
+
+    /**
+     * The count of values in the table without the value 0.
+     *
+     * @return the count
      */
-    private void tampCollisions( int index ) {
-        for( int i = nextIndex( index ); elements[i] != notSetValue; i = nextIndex( i ) ) {
-            int slot = findSlot( elements[i] );
-            if( slot != i ) {
-                elements[slot] = elements[i];
-                elements[i] = notSetValue;
+    private int tableSize() {
+        return hasZero ? size - 1 : size;
+    }
+
+    /**
+     * Delete a slot and shift the following values of the cluster back, that there is no gap in the cluster. A value
+     * is not moved before its home slot.
+     *
+     * @param index the slot to delete
+     * @param iterator the iterator that has deleted the value or null
+     */
+    private void shiftBack( int index, Itr iterator ) {
+        int mask = elements.length - 1;
+        int i = index;
+        for( ;; ) {
+            int next = (i + 1) & mask;
+            int obj = elements[next];
+            if( obj == 0 || hash( obj ) == next ) {
+                break;
             }
+            if( iterator != null && next < index && i >= index ) {
+                // a wrapped value moves from the not visited part into the visited part of the iterator
+                iterator.addWrapped( obj );
+            }
+            elements[i] = obj;
+            i = next;
+        }
+        elements[i] = 0;
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.INT_COMPACT_SET.moved( (i - index) & mask );
         }
     }
 
     /**
-     * Resize the the size of the table.
+     * Create a new empty table.
+     *
+     * @param capacity the minimum capacity, it is rounded up to a power of 2
      */
-    private void resize() {
-        int[] oldElements = elements;
-        int capacity = java.lang.Math.max( (int)(RESIZE_FACTOR * elements.length), elements.length + 1 );
+    private void allocate( int capacity ) {
+        capacity = Integer.highestOneBit( java.lang.Math.max( capacity, 4 ) - 1 ) << 1;
         elements = new int[capacity];
-        Arrays.fill( elements, notSetValue );
-        size = 0;
-        for( int i = 0; i < oldElements.length; ++i )
-            if( oldElements[i] != notSetValue ) {
-                add( oldElements[i] );
+        shift = Integer.numberOfLeadingZeros( capacity ) + 1;
+    }
+
+    /**
+     * Resize the table to the given capacity.
+     *
+     * @param capacity the minimum new capacity, it is rounded up to a power of 2
+     */
+    private void resize( int capacity ) {
+        long start = HashStatistics.ENABLED ? System.nanoTime() : 0;
+        finishResize();
+        int[] oldElements = elements;
+        int oldShift = shift;
+        allocate( capacity );
+        if( incrementalResize ) {
+            this.oldElements = oldElements;
+            this.oldShift = oldShift;
+            oldCount = tableSize();
+            migrateIndex = 0;
+            if( oldCount == 0 ) {
+                this.oldElements = null;
             }
+        } else {
+            for( int obj : oldElements ) {
+                if( obj != 0 ) {
+                    insert( obj );
+                }
+            }
+        }
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.INT_COMPACT_SET.resized( System.nanoTime() - start );
+        }
     }
 
     /**
-     * Find the object or a free place.
-     * 
-     * @param obj the new object
-     * @return the index to the obj or null
+     * Move all values of the old table of an incremental resize into the current table.
+     */
+    private void finishResize() {
+        if( oldElements != null ) {
+            migrate( oldElements.length );
+        }
+    }
+
+    /**
+     * Move the clusters of some slots of the old table into the current table.
+     *
+     * @param slots the count of slots
+     */
+    private void migrate( int slots ) {
+        for( ; slots > 0 && oldElements != null; slots-- ) {
+            if( oldElements[migrateIndex] != 0 ) {
+                migrateCluster( migrateIndex );
+            }
+            migrateIndex++;
+        }
+    }
+
+    /**
+     * Move a whole cluster of the old table into the current table. Only whole clusters are moved, that the lookups
+     * in the rest of the old table find the values without any shift.
+     *
+     * @param index any slot of the cluster
+     */
+    private void migrateCluster( int index ) {
+        int[] old = oldElements;
+        int mask = old.length - 1;
+        int i = index;
+        while( old[(i - 1) & mask] != 0 ) {
+            // the start of the cluster, the slots before the migrate index are already empty
+            i = (i - 1) & mask;
+        }
+        for( ; old[i] != 0; i = (i + 1) & mask ) {
+            insert( old[i] );
+            old[i] = 0;
+            oldCount--;
+        }
+        if( oldCount == 0 ) {
+            oldElements = null;
+        }
+    }
+
+    /**
+     * The home slot of a value.
+     *
+     * @param obj the value
+     * @return the index
+     */
+    private int hash( int obj ) {
+        return (obj * PHI) >>> shift;
+    }
+
+    /**
+     * Find the slot of a value in the current table.
+     *
+     * @param obj the value
+     * @return the index of the value or -1 if not found
      */
     private int findSlot( int obj ) {
-        // We multiply by 2 to add a gap to avoid large clusters if there continue values
-        for( int i = java.lang.Math.abs( obj * 3  ) % elements.length;; i = nextIndex( i ) ) {
-            if( elements[i] == notSetValue || elements[i] == obj ) {
-                return i;
+        return findSlot( elements, shift, obj );
+    }
+
+    /**
+     * Find the slot of a value. The search stops at an empty slot or at a value that is nearer to its home slot as
+     * the searched value would be.
+     *
+     * @param table the current or the old table
+     * @param shift the shift of the hash for the table
+     * @param obj the value
+     * @return the index of the value or -1 if not found
+     */
+    private static int findSlot( int[] table, int shift, int obj ) {
+        int mask = table.length - 1;
+        int distance = 0;
+        int slot;
+        for( int i = (obj * PHI) >>> shift;; i = (i + 1) & mask, distance++ ) {
+            int element = table[i];
+            if( element == 0 || ((i - ((element * PHI) >>> shift)) & mask) < distance ) {
+                slot = -1;
+                break;
             }
+            if( element == obj ) {
+                slot = i;
+                break;
+            }
+        }
+        if( HashStatistics.ENABLED ) {
+            HashStatistics.INT_COMPACT_SET.probe( distance );
         }
+        return slot;
     }
 
     /**
-     * The next index rotating
-     * 
-     * @param index current index
-     * @return the next index
+     * Insert a value that is not in the table. A value that is nearer to its home slot is displaced and inserted
+     * further.
+     *
+     * @param obj the value
      */
-    private int nextIndex( int index ) {
-        return (index + 1) % elements.length;
+    private void insert( int obj ) {
+        int mask = elements.length - 1;
+        for( int i = hash( obj ), distance = 0;; i = (i + 1) & mask, distance++ ) {
+            int element = elements[i];
+            if( element == 0 ) {
+                elements[i] = obj;
+                return;
+            }
+            int elementDistance = (i - hash( element )) & mask;
+            if( elementDistance < distance ) {
+                elements[i] = obj;
+                obj = element;
+                distance = elementDistance;
+            }
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} A running incremental resize is finished first.
      */
     @Override
     public Iterator<Integer> iterator() {
-        ArrayList<Integer> list = new ArrayList<>(size);
+        finishResize();
+        return new Itr();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachInt( IntConsumer action ) {
+        finishResize();
+        if( hasZero ) {
+            action.accept( 0 );
+        }
         for( int obj : elements ) {
-            if( obj != notSetValue ) {
-                list.add( obj );
+            if( obj != 0 ) {
+                action.accept( obj );
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] toIntArray() {
+        finishResize();
+        int[] array = new int[size];
+        int idx = hasZero ? 1 : 0; // the value 0 is already in the new array
+        for( int obj : elements ) {
+            if( obj != 0 ) {
+                array[idx++] = obj;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * {@inheritDoc} The spliterator split the table by index ranges.
+     */
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return intSpliterator();
+    }
+
+    /**
+     * {@inheritDoc} The spliterator split the table by index ranges. A running incremental resize is finished first.
+     */
+    @Override
+    public Spliterator.OfInt intSpliterator() {
+        finishResize();
+        return new TableSpliterator( 0, elements.length, size, true, hasZero );
+    }
+
+    /**
+     * Spliterator over an index range of the table.
+     */
+    private class TableSpliterator implements Spliterator.OfInt {
+
+        private final int[]   table            = elements;
+
+        private int           index;
+
+        private final int     fence;
+
+        /**
+         * The exact count of values if sized else an estimate.
+         */
+        private long          estimate;
+
+        /**
+         * True, if the count is exact. It is decided on creating and only cleared by a split.
+         */
+        private boolean       sized;
+
+        /**
+         * If the value 0 must be returned before the index range.
+         */
+        private boolean       zero;
+
+        private final int     expectedModCount = modCount;
+
+        /**
+         * Create a spliterator.
+         *
+         * @param index the first index
+         * @param fence the end index, exclusive
+         * @param estimate the count of values
+         * @param sized true, if the count is exact
+         * @param zero true, if the value 0 is returned first
+         */
+        TableSpliterator( int index, int fence, long estimate, boolean sized, boolean zero ) {
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.sized = sized;
+            this.zero = zero;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int mid = (index + fence) >>> 1;
+            if( mid <= index ) {
+                return null;
+            }
+            estimate >>>= 1;
+            TableSpliterator prefix = new TableSpliterator( index, mid, estimate, false, zero );
+            index = mid;
+            sized = false;
+            zero = false;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance( IntConsumer action ) {
+            if( zero ) {
+                zero = false;
+                action.accept( 0 );
+                if( modCount != expectedModCount ) {
+                    throw new ConcurrentModificationException();
+                }
+                if( sized ) {
+                    estimate--;
+                }
+                return true;
+            }
+            while( index < fence ) {
+                int obj = table[index++];
+                if( obj != 0 ) {
+                    action.accept( obj );
+                    if( modCount != expectedModCount ) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if( sized ) {
+                        estimate--;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining( IntConsumer action ) {
+            if( zero ) {
+                zero = false;
+                action.accept( 0 );
+            }
+            for( ; index < fence; index++ ) {
+                int obj = table[index];
+                if( obj != 0 ) {
+                    action.accept( obj );
+                }
+            }
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            if( sized ) {
+                estimate = 0;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL | (sized ? SIZED : 0);
+        }
+    }
+
+    /**
+     * Iterator that walk backward over the elements. A remove can move values of a wrapped cluster from the start of
+     * the array to the already visited end. This values are collected and returned at the end. The value 0 is returned
+     * first.
+     */
+    private class Itr implements Iterator<Integer> {
+
+        private boolean zero             = hasZero;
+
+        private int     idx              = elements.length;
+
+        private int     lastIdx          = -1;
+
+        private int[]   wrapped;
+
+        private int     wrappedCount;
+
+        private int     wrappedIdx;
+
+        private int     lastWrappedValue;
+
+        private int     expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            if( zero ) {
+                return true;
+            }
+            while( idx > 0 ) {
+                if( elements[idx - 1] != 0 ) {
+                    return true;
+                }
+                idx--;
+            }
+            return wrappedIdx < wrappedCount;
+        }
+
+        @Override
+        public Integer next() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            if( zero ) {
+                zero = false;
+                lastIdx = -3;
+                return 0;
+            }
+            if( idx > 0 ) {
+                lastIdx = --idx;
+                return elements[idx];
+            }
+            lastIdx = -2;
+            return lastWrappedValue = wrapped[wrappedIdx++];
+        }
+
+        @Override
+        public void remove() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            switch( lastIdx ) {
+                case -1:
+                    throw new IllegalStateException();
+                case -2:
+                    IntCompactSet.this.remove( lastWrappedValue );
+                    break;
+                case -3:
+                    IntCompactSet.this.remove( 0 );
+                    break;
+                default:
+                    shiftBack( lastIdx, this );
+                    size--;
+                    modCount++;
+            }
+            lastIdx = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Save a value that was moved from the not visited to the visited part of the array.
+         * 
+         * @param value the value
+         */
+        void addWrapped( int value ) {
+            if( wrapped == null ) {
+                wrapped = new int[4];
+            } else if( wrappedCount == wrapped.length ) {
+                wrapped = Arrays.copyOf( wrapped, wrappedCount * 2 );
             }
+            wrapped[wrappedCount++] = value;
         }
-        return list.iterator();
     }
 }
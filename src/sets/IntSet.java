@@ -0,0 +1,117 @@
+package sets;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A set of primitive int values. The methods does not box the values like the methods of Set&lt;Integer&gt;.
+ */
+public interface IntSet {
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value the value
+     * @return true, if the set did not already contain the value
+     */
+    boolean add( int value );
+
+    /**
+     * Remove a value from the set.
+     *
+     * @param value the value
+     * @return true, if the set contained the value
+     */
+    boolean remove( int value );
+
+    /**
+     * Add a range of values of an array to the set.
+     *
+     * @param values the values
+     * @param off the index of the first value
+     * @param len the count of values
+     * @return true, if the set was changed
+     */
+    default boolean addAll( int[] values, int off, int len ) {
+        boolean changed = false;
+        for( int i = off; i < off + len; i++ ) {
+            changed |= add( values[i] );
+        }
+        return changed;
+    }
+
+    /**
+     * Remove a range of values of an array from the set.
+     *
+     * @param values the values
+     * @param off the index of the first value
+     * @param len the count of values
+     * @return true, if the set was changed
+     */
+    default boolean removeAll( int[] values, int off, int len ) {
+        boolean changed = false;
+        for( int i = off; i < off + len; i++ ) {
+            changed |= remove( values[i] );
+        }
+        return changed;
+    }
+
+    /**
+     * Check if the value is in the set.
+     *
+     * @param value the value
+     * @return true, if the set contains the value
+     */
+    boolean contains( int value );
+
+    /**
+     * The count of values in the set.
+     *
+     * @return the size
+     */
+    int size();
+
+    /**
+     * Check if the set has no values.
+     *
+     * @return true, if the set is empty
+     */
+    boolean isEmpty();
+
+    /**
+     * Call the action for every value in the set without boxing. The name differs from forEach() because an overload
+     * with a lambda would be ambiguous to Iterable.forEach().
+     *
+     * @param action the action
+     */
+    void forEachInt( IntConsumer action );
+
+    /**
+     * Copy all values of the set into a new array. The name differs from toArray() because Collection.toArray() already
+     * returns an Object[].
+     *
+     * @return the values
+     */
+    int[] toIntArray();
+
+    /**
+     * Create a spliterator over the values without boxing. The default implementation split a copy of the values.
+     *
+     * @return the spliterator
+     */
+    default Spliterator.OfInt intSpliterator() {
+        return Spliterators.spliterator( toIntArray(), Spliterator.DISTINCT );
+    }
+
+    /**
+     * Create a stream of the values without boxing. Call parallel() on the stream for a parallel scan.
+     *
+     * @return the stream
+     */
+    default IntStream intStream() {
+        return StreamSupport.intStream( intSpliterator(), false );
+    }
+}
@@ -0,0 +1,544 @@
+package sets;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * A very low memory set for long values. The values are grouped by the high 32 bits. The low 32 bits of a group are
+ * saved in a PagedIntSet. A group with only one value save it inline without a PagedIntSet, that also sparse values
+ * need only 12 bytes per value. The groups are saved sorted by the high 32 bits in blocks of limited size, that the
+ * values are iterated in ascending order and a new group move only the groups of one block. If the values are in a
+ * small range then there is only one PagedIntSet.
+ */
+public class LongPagedSet extends AbstractSet<Long> implements MemoryFootprint {
+
+    private static final float RESIZE_FACTOR = 1.5f;
+
+    /**
+     * The maximum count of groups in a block. A full block is split into 2 blocks.
+     */
+    private static final int   BLOCK_SIZE    = 1024;
+
+    /**
+     * The blocks sorted by the high 32 bits of their groups.
+     */
+    private Block[]            blocks        = new Block[1];
+
+    private int                blockCount;
+
+    private int                size;
+
+    private int                modCount;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( Long e ) {
+        return add( e.longValue() );
+    }
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value the value
+     * @return true, if the set did not already contain the value
+     */
+    public boolean add( long value ) {
+        int key = (int)(value >> 32);
+        int low = low( value );
+        if( blockCount == 0 ) {
+            insertBlock( 0, new Block() );
+        }
+        int blockIdx = findBlock( key );
+        Block block = blocks[blockIdx];
+        int idx = block.find( key );
+        if( idx < 0 ) {
+            insertGroup( blockIdx, -idx - 1, key, low );
+        } else if( block.sets[idx] == null ) {
+            if( block.singles[idx] == low ) {
+                return false;
+            }
+            // the second value of the group
+            PagedIntSet set = new PagedIntSet();
+            set.add( block.singles[idx] );
+            set.add( low );
+            block.sets[idx] = set;
+        } else if( !block.sets[idx].add( low ) ) {
+            return false;
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( Object o ) {
+        return remove( ((Long)o).longValue() );
+    }
+
+    /**
+     * Remove a value from the set.
+     *
+     * @param value the value
+     * @return true, if the set contained the value
+     */
+    public boolean remove( long value ) {
+        if( blockCount == 0 ) {
+            return false;
+        }
+        int key = (int)(value >> 32);
+        int low = low( value );
+        int blockIdx = findBlock( key );
+        Block block = blocks[blockIdx];
+        int idx = block.find( key );
+        if( idx < 0 ) {
+            return false;
+        }
+        PagedIntSet set = block.sets[idx];
+        if( set == null ) {
+            if( block.singles[idx] != low ) {
+                return false;
+            }
+            removeGroup( blockIdx, idx );
+        } else {
+            if( !set.remove( low ) ) {
+                return false;
+            }
+            if( set.isEmpty() ) {
+                // the iterator can leave a PagedIntSet with one value
+                removeGroup( blockIdx, idx );
+            } else if( set.size() == 1 ) {
+                // save the last value inline
+                block.singles[idx] = set.first();
+                block.sets[idx] = null;
+            }
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( Object o ) {
+        return contains( ((Long)o).longValue() );
+    }
+
+    /**
+     * Check if the value is in the set.
+     *
+     * @param value the value
+     * @return true, if the set contains the value
+     */
+    public boolean contains( long value ) {
+        if( blockCount == 0 ) {
+            return false;
+        }
+        int key = (int)(value >> 32);
+        Block block = blocks[findBlock( key )];
+        int idx = block.find( key );
+        if( idx < 0 ) {
+            return false;
+        }
+        PagedIntSet set = block.sets[idx];
+        return set == null ? block.singles[idx] == low( value ) : set.contains( low( value ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        long bytes = MemoryEstimate.object( MemoryEstimate.REFERENCE + 12 )
+                        + MemoryEstimate.array( blocks.length, MemoryEstimate.REFERENCE );
+        for( int i = 0; i < blockCount; i++ ) {
+            bytes += blocks[i].estimatedSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        Arrays.fill( blocks, 0, blockCount, null );
+        blockCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * {@inheritDoc} The values are iterated in ascending order.
+     */
+    @Override
+    public Iterator<Long> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Call the action for every value in ascending order without boxing. The name differs from forEach() because an
+     * overload with a lambda would be ambiguous to Iterable.forEach().
+     *
+     * @param action the action
+     */
+    public void forEachLong( LongConsumer action ) {
+        for( int b = 0; b < blockCount; b++ ) {
+            Block block = blocks[b];
+            for( int i = 0; i < block.count; i++ ) {
+                long high = (long)block.keys[i] << 32;
+                if( block.sets[i] == null ) {
+                    action.accept( high | value( block.singles[i] ) );
+                } else {
+                    for( PagedIntSet.Itr iterator = block.sets[i].intIterator(); iterator.hasNext(); ) {
+                        action.accept( high | value( iterator.nextInt() ) );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy all values of the set sorted into a new array.
+     *
+     * @return the values
+     */
+    public long[] toLongArray() {
+        long[] array = new long[size];
+        int[] idx = new int[1];
+        forEachLong( value -> array[idx[0]++] = value );
+        return array;
+    }
+
+    /**
+     * The low 32 bits of a value in the order of the PagedIntSet.
+     *
+     * @param value the value
+     * @return the low bits with toggled sign
+     */
+    private static int low( long value ) {
+        return (int)value ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * The low 32 bits of a value from a value of a PagedIntSet.
+     *
+     * @param low the value of the PagedIntSet
+     * @return the unsigned low bits
+     */
+    private static long value( int low ) {
+        return (low ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Find the block for the high bits with a binary search over the first keys of the blocks.
+     *
+     * @param key the high 32 bits of the value
+     * @return the index of the last block whose first key is lower or equals to the key or 0
+     */
+    private int findBlock( int key ) {
+        // the values of a set are often in a small range, that the last block is the most likely
+        if( blocks[blockCount - 1].keys[0] <= key ) {
+            return blockCount - 1;
+        }
+        int low = 1;
+        int high = blockCount - 2;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            if( blocks[mid].keys[0] <= key ) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Insert a new group with one value. A full block is split before.
+     *
+     * @param blockIdx the index of the block
+     * @param idx the index of the new group in the block
+     * @param key the high 32 bits of the value
+     * @param low the low bits of the value in the order of the PagedIntSet
+     */
+    private void insertGroup( int blockIdx, int idx, int key, int low ) {
+        Block block = blocks[blockIdx];
+        if( block.count == BLOCK_SIZE ) {
+            Block next = block.split();
+            insertBlock( blockIdx + 1, next );
+            if( idx > block.count ) {
+                idx -= block.count;
+                block = next;
+            }
+        }
+        block.insert( idx, key, low );
+    }
+
+    /**
+     * Remove a group and an empty block.
+     *
+     * @param blockIdx the index of the block
+     * @param idx the index of the group in the block
+     * @return true, if the block was removed
+     */
+    private boolean removeGroup( int blockIdx, int idx ) {
+        Block block = blocks[blockIdx];
+        block.remove( idx );
+        if( block.count > 0 ) {
+            return false;
+        }
+        blockCount--;
+        System.arraycopy( blocks, blockIdx + 1, blocks, blockIdx, blockCount - blockIdx );
+        blocks[blockCount] = null;
+        return true;
+    }
+
+    /**
+     * Insert a block and move the following blocks.
+     *
+     * @param idx the index of the new block
+     * @param block the block
+     */
+    private void insertBlock( int idx, Block block ) {
+        if( blockCount == blocks.length ) {
+            blocks = Arrays.copyOf( blocks, java.lang.Math.max( (int)(RESIZE_FACTOR * blockCount), blockCount + 1 ) );
+        }
+        System.arraycopy( blocks, idx, blocks, idx + 1, blockCount - idx );
+        blocks[idx] = block;
+        blockCount++;
+    }
+
+    /**
+     * A sorted range of groups. Every group is the high 32 bits and a PagedIntSet or the only value of the group.
+     */
+    private static class Block {
+
+        private int[]         keys    = new int[4];
+
+        /**
+         * The values of the groups or null if the group has only one value.
+         */
+        private PagedIntSet[] sets    = new PagedIntSet[4];
+
+        /**
+         * The only value of a group without a PagedIntSet in the order of the PagedIntSet.
+         */
+        private int[]         singles = new int[4];
+
+        private int           count;
+
+        /**
+         * Find a group with a binary search.
+         *
+         * @param key the high 32 bits
+         * @return the index of the group or (-(insertion point) - 1) if there is no group
+         */
+        int find( int key ) {
+            return Arrays.binarySearch( keys, 0, count, key );
+        }
+
+        /**
+         * Insert a group with one value and move the following groups.
+         *
+         * @param idx the index of the new group
+         * @param key the high 32 bits
+         * @param low the only value
+         */
+        void insert( int idx, int key, int low ) {
+            if( count == keys.length ) {
+                int capacity = java.lang.Math.min( (int)(RESIZE_FACTOR * count), BLOCK_SIZE );
+                keys = Arrays.copyOf( keys, capacity );
+                sets = Arrays.copyOf( sets, capacity );
+                singles = Arrays.copyOf( singles, capacity );
+            }
+            System.arraycopy( keys, idx, keys, idx + 1, count - idx );
+            System.arraycopy( sets, idx, sets, idx + 1, count - idx );
+            System.arraycopy( singles, idx, singles, idx + 1, count - idx );
+            keys[idx] = key;
+            sets[idx] = null;
+            singles[idx] = low;
+            count++;
+        }
+
+        /**
+         * Remove a group and move the following groups.
+         *
+         * @param idx the index of the group
+         */
+        void remove( int idx ) {
+            count--;
+            System.arraycopy( keys, idx + 1, keys, idx, count - idx );
+            System.arraycopy( sets, idx + 1, sets, idx, count - idx );
+            System.arraycopy( singles, idx + 1, singles, idx, count - idx );
+            sets[count] = null;
+        }
+
+        /**
+         * Move the upper half of the groups into a new block.
+         *
+         * @return the new block
+         */
+        Block split() {
+            Block next = new Block();
+            int half = count / 2;
+            next.keys = Arrays.copyOfRange( keys, half, keys.length );
+            next.sets = Arrays.copyOfRange( sets, half, sets.length );
+            next.singles = Arrays.copyOfRange( singles, half, singles.length );
+            next.count = count - half;
+            Arrays.fill( sets, half, count, null );
+            count = half;
+            return next;
+        }
+
+        /**
+         * Estimate the heap memory of the block and its PagedIntSets.
+         *
+         * @return the size in bytes
+         */
+        long estimatedSizeInBytes() {
+            long bytes = MemoryEstimate.object( 3 * MemoryEstimate.REFERENCE + 4 ) + MemoryEstimate.array( keys.length, 4 )
+                            + MemoryEstimate.array( sets.length, MemoryEstimate.REFERENCE )
+                            + MemoryEstimate.array( singles.length, 4 );
+            for( int i = 0; i < count; i++ ) {
+                if( sets[i] != null ) {
+                    bytes += sets[i].estimatedSizeInBytes();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Iterator over the groups in the order of the keys.
+     */
+    private class Itr implements Iterator<Long> {
+
+        private int             blockIdx;
+
+        /**
+         * The index of the current group in the block.
+         */
+        private int             idx              = -1;
+
+        /**
+         * The iterator of the current group or null if the group has only one value.
+         */
+        private PagedIntSet.Itr iterator;
+
+        /**
+         * True, if the only value of the current group was not returned yet.
+         */
+        private boolean         singlePending;
+
+        private long            high;
+
+        private long            lastValue;
+
+        private boolean         canRemove;
+
+        private int             expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            while( true ) {
+                if( iterator != null ) {
+                    if( iterator.hasNext() ) {
+                        return true;
+                    }
+                    iterator = null;
+                } else if( singlePending ) {
+                    return true;
+                }
+                // the next group
+                idx++;
+                while( blockIdx < blockCount && idx >= blocks[blockIdx].count ) {
+                    blockIdx++;
+                    idx = 0;
+                }
+                if( blockIdx >= blockCount ) {
+                    return false;
+                }
+                Block block = blocks[blockIdx];
+                high = (long)block.keys[idx] << 32;
+                if( block.sets[idx] == null ) {
+                    singlePending = true;
+                } else {
+                    iterator = block.sets[idx].intIterator();
+                }
+            }
+        }
+
+        @Override
+        public Long next() {
+            return nextLong();
+        }
+
+        /**
+         * The next value without boxing.
+         *
+         * @return the value
+         */
+        long nextLong() {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            if( singlePending ) {
+                singlePending = false;
+                lastValue = high | value( blocks[blockIdx].singles[idx] );
+            } else {
+                lastValue = high | value( iterator.nextInt() );
+            }
+            canRemove = true;
+            return lastValue;
+        }
+
+        @Override
+        public void remove() {
+            if( !canRemove ) {
+                throw new IllegalStateException();
+            }
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            canRemove = false;
+            boolean removeGroup;
+            if( iterator == null ) {
+                removeGroup = true;
+            } else {
+                // the group keeps its PagedIntSet until the iteration of the group is finished
+                iterator.remove();
+                removeGroup = blocks[blockIdx].sets[idx].isEmpty();
+            }
+            if( removeGroup ) {
+                iterator = null;
+                // continue with the next group
+                idx = removeGroup( blockIdx, idx ) ? -1 : idx - 1;
+            }
+            size--;
+            modCount++;
+            expectedModCount = modCount;
+        }
+    }
+}
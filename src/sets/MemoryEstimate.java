@@ -0,0 +1,44 @@
+package sets;
+
+/**
+ * Helper for the memory estimates of MemoryFootprint.
+ */
+final class MemoryEstimate {
+
+    static final int REFERENCE = 4;
+
+    private MemoryEstimate() {
+        // static helper
+    }
+
+    /**
+     * The memory of an object.
+     *
+     * @param fieldBytes the sum of the sizes of all instance fields, a reference has 4 bytes
+     * @return the size in bytes with header and alignment
+     */
+    static long object( int fieldBytes ) {
+        return align( 12 + fieldBytes );
+    }
+
+    /**
+     * The memory of an array.
+     *
+     * @param length the length of the array
+     * @param elementBytes the size of an element, a reference has 4 bytes
+     * @return the size in bytes with header and alignment
+     */
+    static long array( int length, int elementBytes ) {
+        return align( 16 + (long)length * elementBytes );
+    }
+
+    /**
+     * Round up to a multiple of 8.
+     *
+     * @param bytes the size
+     * @return the aligned size
+     */
+    private static long align( long bytes ) {
+        return (bytes + 7) & ~7L;
+    }
+}
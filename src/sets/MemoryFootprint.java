@@ -0,0 +1,24 @@
+package sets;
+
+/**
+ * A set that can estimate its memory without a garbage collection. This can be called in production, for example from
+ * the SetStatistics MXBean. The estimate assumes a 64 bit JVM with compressed references: 12 bytes for an object
+ * header, 16 bytes for an array header, 4 bytes for a reference and an alignment of 8 bytes. The memory of the
+ * values of a set of objects is not included.
+ */
+public interface MemoryFootprint {
+
+    /**
+     * The count of values in the set.
+     *
+     * @return the size
+     */
+    int size();
+
+    /**
+     * Estimate the memory of the set.
+     *
+     * @return the size in bytes
+     */
+    long estimatedSizeInBytes();
+}
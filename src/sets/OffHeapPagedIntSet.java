@@ -0,0 +1,809 @@
+package sets;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A PagedIntSet that save the pages in direct memory outside of the Java heap. The garbage collector see only the
+ * directory of the pages and some large memory chunks independent of the count of values. A page is a sorted array of
+ * chars or a bitmap. The memory of the pages is allocated in blocks of a power of 2 from the chunks and freed blocks
+ * are reused. The memory is freed with close() or else if the garbage collector collect the set.
+ */
+public class OffHeapPagedIntSet extends AbstractSet<Integer> implements IntSet, MemoryFootprint, Closeable {
+
+    private static final float RESIZE_FACTOR  = 1.5f;
+
+    /**
+     * The kind of a bitmap page. All other kinds are the size class of a sorted array.
+     */
+    private static final byte  BITMAP         = -1;
+
+    /**
+     * The count of size classes. The smallest block has 16 bytes (8 chars), the largest 8 KB (a bitmap).
+     */
+    private static final int   SIZE_CLASSES   = 10;
+
+    /**
+     * The maximum count of values of an array page. It has the same memory like a bitmap.
+     */
+    private static final int   ARRAY_MAX_SIZE = 4096;
+
+    /**
+     * Below this count of values a bitmap is replaced with an array page.
+     */
+    private static final int   BITMAP_MIN     = BitmapPage.MIN_SIZE;
+
+    private static final int   BITMAP_BYTES   = BitmapPage.SIZE_IN_BYTES;
+
+    /**
+     * An address is the index of the chunk in the high bits and the offset in the chunk in the low bits.
+     */
+    private static final int   CHUNK_BITS     = 20;
+
+    private static final int   MIN_CHUNK_SIZE = 1 << 16;
+
+    private static final int   MAX_CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * The sorted high 16 bits of the pages.
+     */
+    private short[]            keys           = new short[2];
+
+    private int[]              addresses      = new int[2];
+
+    private int[]              sizes          = new int[2];
+
+    private byte[]             kinds          = new byte[2];
+
+    private int                pageCount;
+
+    private int                size;
+
+    private int                modCount;
+
+    private ByteBuffer[]       chunks         = new ByteBuffer[0];
+
+    private int                chunkCount;
+
+    /**
+     * The used bytes of the last chunk.
+     */
+    private int                chunkUsed;
+
+    /**
+     * The first free block of every size class or -1. The first int of a free block is the address of the next free
+     * block.
+     */
+    private final int[]        freeBlocks     = new int[SIZE_CLASSES];
+
+    private boolean            closed;
+
+    /**
+     * Create a new empty instance.
+     */
+    public OffHeapPagedIntSet() {
+        Arrays.fill( freeBlocks, -1 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( Integer e ) {
+        return add( e.intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( int value ) {
+        ensureOpen();
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
+            idx = -idx - 1;
+            insertPage( idx, (short)(value >> 16), allocate( 0 ), (byte)0 );
+        }
+        boolean added = kinds[idx] == BITMAP ? bitmapAdd( idx, (char)value ) : arrayAdd( idx, (char)value );
+        if( added ) {
+            size++;
+            modCount++;
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( Object o ) {
+        return remove( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( int value ) {
+        ensureOpen();
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
+            return false;
+        }
+        boolean removed = kinds[idx] == BITMAP ? bitmapRemove( idx, (char)value ) : arrayRemove( idx, (char)value );
+        if( !removed ) {
+            return false;
+        }
+        if( sizes[idx] == 0 ) {
+            removePage( idx );
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( Object o ) {
+        return contains( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( int value ) {
+        ensureOpen();
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
+            return false;
+        }
+        int address = addresses[idx];
+        ByteBuffer chunk = chunk( address );
+        int base = offset( address );
+        char low = (char)value;
+        if( kinds[idx] == BITMAP ) {
+            return (chunk.getLong( base + (low >>> 6) * 8 ) & (1L << low)) != 0;
+        }
+        return search( chunk, base, sizes[idx], low ) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc} The direct memory of the chunks is included, the free blocks in the chunks are used memory.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        long bytes = MemoryEstimate.object( 6 * MemoryEstimate.REFERENCE + 21 ) + MemoryEstimate.array( keys.length, 2 )
+                        + MemoryEstimate.array( addresses.length, 4 ) + MemoryEstimate.array( sizes.length, 4 )
+                        + MemoryEstimate.array( kinds.length, 1 ) + MemoryEstimate.array( SIZE_CLASSES, 4 )
+                        + MemoryEstimate.array( chunks.length, MemoryEstimate.REFERENCE );
+        for( int i = 0; i < chunkCount; i++ ) {
+            // the DirectByteBuffer object and its direct memory
+            bytes += MemoryEstimate.object( 64 ) + chunks[i].capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc} The memory chunks are freed.
+     */
+    @Override
+    public void clear() {
+        ensureOpen();
+        freeChunks();
+        pageCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * {@inheritDoc} The values are iterated in ascending order.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        ensureOpen();
+        return new Itr();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachInt( IntConsumer action ) {
+        ensureOpen();
+        for( Itr iterator = new Itr(); iterator.hasNext(); ) {
+            action.accept( iterator.nextInt() );
+        }
+    }
+
+    /**
+     * {@inheritDoc} The values are sorted.
+     */
+    @Override
+    public int[] toIntArray() {
+        ensureOpen();
+        int[] array = new int[size];
+        int idx = 0;
+        for( Itr iterator = new Itr(); iterator.hasNext(); ) {
+            array[idx++] = iterator.nextInt();
+        }
+        return array;
+    }
+
+    /**
+     * Free the direct memory. The set can not be used after closing.
+     */
+    @Override
+    public void close() {
+        if( !closed ) {
+            freeChunks();
+            closed = true;
+            pageCount = 0;
+            size = 0;
+            modCount++;
+        }
+    }
+
+    /**
+     * Throw an exception if the set was closed.
+     */
+    private void ensureOpen() {
+        if( closed ) {
+            throw new IllegalStateException( "closed" );
+        }
+    }
+
+    /**
+     * Add a value to an array page. If the array is full then it is replaced with a larger array or a bitmap.
+     *
+     * @param idx the index of the page
+     * @param value the low 16 bits of the value
+     * @return true, if the value was added
+     */
+    private boolean arrayAdd( int idx, char value ) {
+        int count = sizes[idx];
+        int pos = search( chunk( addresses[idx] ), offset( addresses[idx] ), count, value );
+        if( pos >= 0 ) {
+            return false;
+        }
+        pos = -pos - 1;
+        if( count == capacity( kinds[idx] ) ) {
+            if( count == ARRAY_MAX_SIZE ) {
+                toBitmap( idx );
+                return bitmapAdd( idx, value );
+            }
+            int address = allocate( kinds[idx] + 1 );
+            copy( addresses[idx], address, count * 2 );
+            free( addresses[idx], kinds[idx] );
+            addresses[idx] = address;
+            kinds[idx]++;
+        }
+        ByteBuffer chunk = chunk( addresses[idx] );
+        int base = offset( addresses[idx] );
+        for( int i = count; i > pos; i-- ) {
+            chunk.putChar( base + 2 * i, chunk.getChar( base + 2 * i - 2 ) );
+        }
+        chunk.putChar( base + 2 * pos, value );
+        sizes[idx]++;
+        return true;
+    }
+
+    /**
+     * Remove a value from an array page. If the array is mostly unused then it is replaced with a smaller array.
+     *
+     * @param idx the index of the page
+     * @param value the low 16 bits of the value
+     * @return true, if the value was removed
+     */
+    private boolean arrayRemove( int idx, char value ) {
+        ByteBuffer chunk = chunk( addresses[idx] );
+        int base = offset( addresses[idx] );
+        int count = sizes[idx];
+        int pos = search( chunk, base, count, value );
+        if( pos < 0 ) {
+            return false;
+        }
+        count--;
+        for( int i = pos; i < count; i++ ) {
+            chunk.putChar( base + 2 * i, chunk.getChar( base + 2 * i + 2 ) );
+        }
+        sizes[idx] = count;
+        if( count > 0 && kinds[idx] > 0 && count <= capacity( kinds[idx] ) / 4 ) {
+            int address = allocate( kinds[idx] - 1 );
+            copy( addresses[idx], address, count * 2 );
+            free( addresses[idx], kinds[idx] );
+            addresses[idx] = address;
+            kinds[idx]--;
+        }
+        return true;
+    }
+
+    /**
+     * Add a value to a bitmap page.
+     *
+     * @param idx the index of the page
+     * @param value the low 16 bits of the value
+     * @return true, if the value was added
+     */
+    private boolean bitmapAdd( int idx, char value ) {
+        ByteBuffer chunk = chunk( addresses[idx] );
+        int pos = offset( addresses[idx] ) + (value >>> 6) * 8;
+        long word = chunk.getLong( pos );
+        long bit = 1L << value;
+        if( (word & bit) != 0 ) {
+            return false;
+        }
+        chunk.putLong( pos, word | bit );
+        sizes[idx]++;
+        return true;
+    }
+
+    /**
+     * Remove a value from a bitmap page. If the page thins out it is replaced with an array page.
+     *
+     * @param idx the index of the page
+     * @param value the low 16 bits of the value
+     * @return true, if the value was removed
+     */
+    private boolean bitmapRemove( int idx, char value ) {
+        ByteBuffer chunk = chunk( addresses[idx] );
+        int pos = offset( addresses[idx] ) + (value >>> 6) * 8;
+        long word = chunk.getLong( pos );
+        long bit = 1L << value;
+        if( (word & bit) == 0 ) {
+            return false;
+        }
+        chunk.putLong( pos, word & ~bit );
+        if( --sizes[idx] < BITMAP_MIN ) {
+            toArray( idx );
+        }
+        return true;
+    }
+
+    /**
+     * Replace a full array page with a bitmap page.
+     *
+     * @param idx the index of the page
+     */
+    private void toBitmap( int idx ) {
+        int oldAddress = addresses[idx];
+        ByteBuffer oldChunk = chunk( oldAddress );
+        int oldBase = offset( oldAddress );
+        int address = allocate( SIZE_CLASSES - 1 );
+        ByteBuffer chunk = chunk( address );
+        int base = offset( address );
+        for( int i = 0; i < BITMAP_BYTES; i += 8 ) {
+            chunk.putLong( base + i, 0 );
+        }
+        for( int i = 0; i < sizes[idx]; i++ ) {
+            char value = oldChunk.getChar( oldBase + 2 * i );
+            int pos = base + (value >>> 6) * 8;
+            chunk.putLong( pos, chunk.getLong( pos ) | (1L << value) );
+        }
+        free( oldAddress, kinds[idx] );
+        addresses[idx] = address;
+        kinds[idx] = BITMAP;
+    }
+
+    /**
+     * Replace a bitmap page with an array page.
+     *
+     * @param idx the index of the page
+     */
+    private void toArray( int idx ) {
+        int oldAddress = addresses[idx];
+        ByteBuffer oldChunk = chunk( oldAddress );
+        int oldBase = offset( oldAddress );
+        int sizeClass = sizeClass( sizes[idx] );
+        int address = allocate( sizeClass );
+        ByteBuffer chunk = chunk( address );
+        int base = offset( address );
+        int count = 0;
+        for( int i = 0; i < BITMAP_BYTES / 8; i++ ) {
+            for( long word = oldChunk.getLong( oldBase + i * 8 ); word != 0; word &= word - 1 ) {
+                chunk.putChar( base + 2 * count++, (char)((i << 6) + Long.numberOfTrailingZeros( word )) );
+            }
+        }
+        free( oldAddress, SIZE_CLASSES - 1 );
+        addresses[idx] = address;
+        kinds[idx] = (byte)sizeClass;
+    }
+
+    /**
+     * The count of chars of an array of a size class.
+     *
+     * @param sizeClass the size class
+     * @return the capacity
+     */
+    private static int capacity( int sizeClass ) {
+        return 8 << sizeClass;
+    }
+
+    /**
+     * The smallest size class for an array with the count of values.
+     *
+     * @param count the count of values
+     * @return the size class
+     */
+    private static int sizeClass( int count ) {
+        int sizeClass = 0;
+        while( capacity( sizeClass ) < count ) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /**
+     * Binary search of a value in a sorted array page.
+     *
+     * @param chunk the chunk of the page
+     * @param base the offset of the page in the chunk
+     * @param count the count of values
+     * @param value the searched value
+     * @return the index of the value or (-(insertion point) - 1)
+     */
+    private static int search( ByteBuffer chunk, int base, int count, char value ) {
+        int low = 0;
+        int high = count - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            char midValue = chunk.getChar( base + 2 * mid );
+            if( midValue < value ) {
+                low = mid + 1;
+            } else if( midValue > value ) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Find the position of the smallest value of a page that is greater or equals to the value.
+     *
+     * @param idx the index of the page
+     * @param value the value, can be 65536
+     * @return the index in the array, the bit in the bitmap or -1 if there is no such value
+     */
+    private int ceilingPosition( int idx, int value ) {
+        ByteBuffer chunk = chunk( addresses[idx] );
+        int base = offset( addresses[idx] );
+        if( kinds[idx] == BITMAP ) {
+            if( value > Character.MAX_VALUE ) {
+                return -1;
+            }
+            int wordIdx = value >>> 6;
+            long word = chunk.getLong( base + wordIdx * 8 ) & (-1L << value);
+            while( word == 0 ) {
+                if( ++wordIdx == BITMAP_BYTES / 8 ) {
+                    return -1;
+                }
+                word = chunk.getLong( base + wordIdx * 8 );
+            }
+            return (wordIdx << 6) + Long.numberOfTrailingZeros( word );
+        }
+        if( value > Character.MAX_VALUE ) {
+            return -1;
+        }
+        int pos = search( chunk, base, sizes[idx], (char)value );
+        if( pos < 0 ) {
+            pos = -pos - 1;
+        }
+        return pos < sizes[idx] ? pos : -1;
+    }
+
+    /**
+     * Get the low 16 bits of the value of a position.
+     *
+     * @param idx the index of the page
+     * @param pos the position returned from ceilingPosition()
+     * @return the value
+     */
+    private char valueAt( int idx, int pos ) {
+        if( kinds[idx] == BITMAP ) {
+            return (char)pos;
+        }
+        return chunk( addresses[idx] ).getChar( offset( addresses[idx] ) + 2 * pos );
+    }
+
+    /**
+     * Get a free block of memory.
+     *
+     * @param sizeClass the size class, the block has 16 &lt;&lt; sizeClass bytes
+     * @return the address of the block
+     */
+    private int allocate( int sizeClass ) {
+        int address = freeBlocks[sizeClass];
+        if( address >= 0 ) {
+            freeBlocks[sizeClass] = chunk( address ).getInt( offset( address ) );
+            return address;
+        }
+        int bytes = 16 << sizeClass;
+        if( chunkCount == 0 || chunkUsed + bytes > chunks[chunkCount - 1].capacity() ) {
+            addChunk();
+        }
+        address = ((chunkCount - 1) << CHUNK_BITS) | chunkUsed;
+        chunkUsed += bytes;
+        return address;
+    }
+
+    /**
+     * Return a block of memory for reuse.
+     *
+     * @param address the address of the block
+     * @param sizeClass the size class of the block
+     */
+    private void free( int address, int sizeClass ) {
+        chunk( address ).putInt( offset( address ), freeBlocks[sizeClass] );
+        freeBlocks[sizeClass] = address;
+    }
+
+    /**
+     * Allocate a new chunk of direct memory. The rest of the current chunk is split into free blocks.
+     */
+    private void addChunk() {
+        if( chunkCount > 0 ) {
+            int rest = chunks[chunkCount - 1].capacity() - chunkUsed;
+            for( int sizeClass = SIZE_CLASSES - 1; sizeClass >= 0; sizeClass-- ) {
+                for( ; rest >= 16 << sizeClass; rest -= 16 << sizeClass ) {
+                    free( ((chunkCount - 1) << CHUNK_BITS) | chunkUsed, sizeClass );
+                    chunkUsed += 16 << sizeClass;
+                }
+            }
+        }
+        if( chunkCount == chunks.length ) {
+            chunks = Arrays.copyOf( chunks, java.lang.Math.max( 2 * chunkCount, 4 ) );
+        }
+        // small sets start with small chunks
+        int chunkSize = MIN_CHUNK_SIZE << java.lang.Math.min( chunkCount, CHUNK_BITS - 16 );
+        chunks[chunkCount++] = ByteBuffer.allocateDirect( chunkSize ).order( ByteOrder.nativeOrder() );
+        chunkUsed = 0;
+    }
+
+    /**
+     * Copy the content of a block into another block.
+     *
+     * @param from the address of the source
+     * @param to the address of the target
+     * @param length the count of bytes
+     */
+    private void copy( int from, int to, int length ) {
+        ByteBuffer source = chunk( from ).duplicate();
+        source.limit( offset( from ) + length ).position( offset( from ) );
+        ByteBuffer target = chunk( to ).duplicate();
+        target.position( offset( to ) );
+        target.put( source );
+    }
+
+    /**
+     * Free all chunks and the blocks of all pages.
+     */
+    private void freeChunks() {
+        for( int i = 0; i < chunkCount; i++ ) {
+            Cleaner.free( chunks[i] );
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        chunkUsed = 0;
+        Arrays.fill( freeBlocks, -1 );
+    }
+
+    private ByteBuffer chunk( int address ) {
+        return chunks[address >>> CHUNK_BITS];
+    }
+
+    private static int offset( int address ) {
+        return address & (MAX_CHUNK_SIZE - 1);
+    }
+
+    /**
+     * Find the page with a binary search.
+     *
+     * @param key the high 16 bits of the value
+     * @return the index of the page or (-(insertion point) - 1) if there is no page
+     */
+    private int findPage( int key ) {
+        int low = 0;
+        int high = pageCount - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            int midKey = keys[mid];
+            if( midKey < key ) {
+                low = mid + 1;
+            } else if( midKey > key ) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Insert a new empty page and move the following pages.
+     *
+     * @param idx the index of the new page
+     * @param key the high 16 bits of the values
+     * @param address the address of the memory block
+     * @param kind the size class of the array
+     */
+    private void insertPage( int idx, short key, int address, byte kind ) {
+        if( pageCount == keys.length ) {
+            int capacity = java.lang.Math.max( (int)(RESIZE_FACTOR * pageCount), pageCount + 1 );
+            keys = Arrays.copyOf( keys, capacity );
+            addresses = Arrays.copyOf( addresses, capacity );
+            sizes = Arrays.copyOf( sizes, capacity );
+            kinds = Arrays.copyOf( kinds, capacity );
+        }
+        System.arraycopy( keys, idx, keys, idx + 1, pageCount - idx );
+        System.arraycopy( addresses, idx, addresses, idx + 1, pageCount - idx );
+        System.arraycopy( sizes, idx, sizes, idx + 1, pageCount - idx );
+        System.arraycopy( kinds, idx, kinds, idx + 1, pageCount - idx );
+        keys[idx] = key;
+        addresses[idx] = address;
+        sizes[idx] = 0;
+        kinds[idx] = kind;
+        pageCount++;
+    }
+
+    /**
+     * Remove a page, free its memory and move the following pages.
+     *
+     * @param idx the index of the page
+     */
+    private void removePage( int idx ) {
+        free( addresses[idx], kinds[idx] == BITMAP ? SIZE_CLASSES - 1 : kinds[idx] );
+        pageCount--;
+        System.arraycopy( keys, idx + 1, keys, idx, pageCount - idx );
+        System.arraycopy( addresses, idx + 1, addresses, idx, pageCount - idx );
+        System.arraycopy( sizes, idx + 1, sizes, idx, pageCount - idx );
+        System.arraycopy( kinds, idx + 1, kinds, idx, pageCount - idx );
+    }
+
+    /**
+     * Release the memory of direct buffers without waiting for the garbage collector. The internal API differs between
+     * Java 8 and Java 9+, that it is called with reflection. If it is not available then the garbage collector must
+     * free the memory.
+     */
+    private static class Cleaner {
+
+        private static final Object UNSAFE;
+
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+                invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+                Field field = unsafeClass.getDeclaredField( "theUnsafe" );
+                field.setAccessible( true );
+                unsafe = field.get( null );
+            } catch( ReflectiveOperationException | RuntimeException ex ) {
+                // Java 8, use the cleaner of the buffer
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        /**
+         * Free the memory of a direct buffer. The buffer must not be used anymore.
+         *
+         * @param buffer the buffer
+         */
+        static void free( ByteBuffer buffer ) {
+            try {
+                if( INVOKE_CLEANER != null ) {
+                    INVOKE_CLEANER.invoke( UNSAFE, buffer );
+                } else {
+                    Method cleaner = buffer.getClass().getMethod( "cleaner" );
+                    cleaner.setAccessible( true );
+                    Object clean = cleaner.invoke( buffer );
+                    clean.getClass().getMethod( "clean" ).invoke( clean );
+                }
+            } catch( ReflectiveOperationException | RuntimeException ex ) {
+                // the garbage collector free the memory later
+            }
+        }
+    }
+
+    /**
+     * Iterator over the values in ascending order.
+     */
+    private class Itr implements Iterator<Integer> {
+
+        private int     pageIdx          = -1;
+
+        /**
+         * The position of the next value in the current page or -1.
+         */
+        private int     pos              = -1;
+
+        private int     lastValue;
+
+        private boolean canRemove;
+
+        private int     expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            while( pos < 0 ) {
+                if( ++pageIdx >= pageCount ) {
+                    pageIdx = pageCount;
+                    return false;
+                }
+                pos = ceilingPosition( pageIdx, 0 );
+            }
+            return true;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        /**
+         * The next value without boxing.
+         *
+         * @return the value
+         */
+        int nextInt() {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            char low = valueAt( pageIdx, pos );
+            int value = (keys[pageIdx] << 16) | low;
+            pos = kinds[pageIdx] == BITMAP ? ceilingPosition( pageIdx, low + 1 ) : (++pos < sizes[pageIdx] ? pos : -1);
+            lastValue = value;
+            canRemove = true;
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            if( !canRemove ) {
+                throw new IllegalStateException();
+            }
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            canRemove = false;
+            int count = pageCount;
+            OffHeapPagedIntSet.this.remove( lastValue );
+            expectedModCount = modCount;
+            if( count != pageCount ) {
+                // the page was removed, continue with the next page
+                pageIdx--;
+                pos = -1;
+            } else {
+                // the page can be moved or converted
+                pos = ceilingPosition( pageIdx, (char)lastValue + 1 );
+            }
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package sets;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A page that save until 65536 values of the low 16 bits of integer values. There are different implementations for
+ * the different densities of values. A page can replace itself with another implementation if it is added or removed a
+ * value. That the caller must use the returned page of add() and remove().
+ */
+abstract class Page {
+
+    /**
+     * The payload type of the binary format for sorted values as chars.
+     */
+    static final int FORMAT_ARRAY  = 1;
+
+    /**
+     * The payload type of the binary format for a bitmap of 1024 longs.
+     */
+    static final int FORMAT_BITMAP = 2;
+
+    /**
+     * The payload type of the binary format for the count of runs as char followed by the pairs of start and length - 1.
+     */
+    static final int FORMAT_RUN    = 3;
+
+    /**
+     * True, if the page is used by a frozen PagedIntSet. A shared page is never changed, a set must change a copy.
+     */
+    boolean          shared;
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     * @return this or a new page that replace this page
+     */
+    abstract Page add( char value );
+
+    /**
+     * Remove a value.
+     *
+     * @param value the value
+     * @return this or a new page that replace this page
+     */
+    abstract Page remove( char value );
+
+    /**
+     * Check if the value is in the page.
+     *
+     * @param value the value
+     * @return true, if contains
+     */
+    abstract boolean contains( char value );
+
+    /**
+     * The count of values in the page.
+     *
+     * @return the size
+     */
+    abstract int size();
+
+    /**
+     * Find the next position of a value. The position is only valid for the implementation of the page. Position 0
+     * is the start position.
+     *
+     * @param pos the current position
+     * @return the position of the next value at or after pos or -1 if there are no more values
+     */
+    abstract int nextPosition( int pos );
+
+    /**
+     * Find the position of the smallest value that is greater or equals to the value.
+     *
+     * @param value the value, can be 65536
+     * @return the position or -1 if there is no such value
+     */
+    abstract int ceilingPosition( int value );
+
+    /**
+     * Find the smallest value that is greater or equals to the value.
+     *
+     * @param value the value, can be 65536
+     * @return the found value or -1 if there is no such value
+     */
+    int ceiling( int value ) {
+        int pos = ceilingPosition( value );
+        return pos < 0 ? -1 : valueAt( pos );
+    }
+
+    /**
+     * Find the largest value that is lower or equals to the value.
+     *
+     * @param value the value, can be -1
+     * @return the found value or -1 if there is no such value
+     */
+    abstract int floor( int value );
+
+    /**
+     * Get the value of a position.
+     *
+     * @param pos a position returned from nextPosition()
+     * @return the value
+     */
+    abstract char valueAt( int pos );
+
+    /**
+     * The count of values that are lower as the value. The default implementation count all values and work also for
+     * an unsorted page.
+     *
+     * @param value the value, can be 65536
+     * @return the count
+     */
+    int rank( int value ) {
+        int count = 0;
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            if( valueAt( pos ) < value ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the value at an index of the sorted values. The default implementation sort a copy of the values.
+     *
+     * @param index the index, lower as size()
+     * @return the value
+     */
+    char select( int index ) {
+        return toSortedArray()[index];
+    }
+
+    /**
+     * Create a copy of the page that is independent of this page.
+     *
+     * @return the copy
+     */
+    abstract Page copy();
+
+    /**
+     * Estimate the heap memory of the page.
+     *
+     * @return the size in bytes
+     */
+    abstract long estimatedSizeInBytes();
+
+    /**
+     * The memory of the allocated but not used capacity.
+     *
+     * @return the size in bytes
+     */
+    abstract int slackInBytes();
+
+    /**
+     * If the positions of nextPosition() return the values in ascending order.
+     *
+     * @return true, if sorted
+     */
+    boolean isSorted() {
+        return true;
+    }
+
+    /**
+     * Copy the values into a new sorted array.
+     *
+     * @return the values
+     */
+    char[] toSortedArray() {
+        char[] values = new char[size()];
+        int idx = 0;
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            values[idx++] = valueAt( pos );
+        }
+        if( !isSorted() ) {
+            Arrays.sort( values );
+        }
+        return values;
+    }
+
+    /**
+     * Call the action for every value of this page.
+     *
+     * @param high the high 16 bits of the values
+     * @param action the action
+     */
+    void forEach( int high, IntConsumer action ) {
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            action.accept( high | valueAt( pos ) );
+        }
+    }
+
+    /**
+     * Copy the values of this page sorted into the array.
+     *
+     * @param high the high 16 bits of the values
+     * @param array the target
+     * @param idx the start position in the target
+     * @return the next free position in the target
+     */
+    int toIntArray( int high, int[] array, int idx ) {
+        int start = idx;
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            array[idx++] = high | valueAt( pos );
+        }
+        if( !isSorted() ) {
+            Arrays.sort( array, start, idx );
+        }
+        return idx;
+    }
+
+    /**
+     * The payload type of this page in the binary format. A hash table is not saved, it is saved as sorted values.
+     *
+     * @return one of the FORMAT constants
+     */
+    int formatType() {
+        return FORMAT_ARRAY;
+    }
+
+    /**
+     * The length of the payload in the binary format.
+     *
+     * @return the length in bytes
+     */
+    int formatLength() {
+        return size() * 2;
+    }
+
+    /**
+     * Write the payload of this page in the binary format.
+     *
+     * @param out the target
+     * @throws IOException if any I/O error occur
+     */
+    void write( DataOutput out ) throws IOException {
+        for( char value : toSortedArray() ) {
+            out.writeChar( value );
+        }
+    }
+
+    /**
+     * Read a page that was written with write(). The formatLength() of the new page is the count of read bytes.
+     *
+     * @param in the source
+     * @param type the payload type
+     * @param count the count of values in the page
+     * @return the new page
+     * @throws IOException if any I/O error occur or the data are invalid
+     */
+    static Page read( DataInput in, int type, int count ) throws IOException {
+        if( count <= 0 || count > 0x10000 ) {
+            throw new IOException( "Invalid count of values: " + count );
+        }
+        switch( type ) {
+            case FORMAT_ARRAY:
+                char[] values = new char[count];
+                for( int i = 0; i < count; i++ ) {
+                    values[i] = in.readChar();
+                }
+                // the same page type like on writing, that formatLength() is the length of the read payload
+                return count <= ArrayPage.MAX_SIZE ? new ArrayPage( values, count ) : new HashPage( values, count );
+            case FORMAT_BITMAP:
+                long[] words = new long[1024];
+                int bits = 0;
+                for( int i = 0; i < words.length; i++ ) {
+                    words[i] = in.readLong();
+                    bits += Long.bitCount( words[i] );
+                }
+                if( bits != count ) {
+                    throw new IOException( "Invalid count of values: " + count );
+                }
+                return new BitmapPage( words, count );
+            case FORMAT_RUN:
+                char[] runs = new char[2 * in.readChar()];
+                int length = 0;
+                for( int i = 0; i < runs.length; i++ ) {
+                    runs[i] = in.readChar();
+                    if( (i & 1) != 0 ) {
+                        length += runs[i] + 1;
+                    }
+                }
+                if( length != count ) {
+                    throw new IOException( "Invalid count of values: " + count );
+                }
+                return new RunPage( runs, runs.length / 2, count );
+            default:
+                throw new IOException( "Unknown page type: " + type );
+        }
+    }
+
+    /**
+     * Set the bits of the values in a bitmap of 1024 words.
+     *
+     * @param words the bitmap
+     */
+    void orInto( long[] words ) {
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            char value = valueAt( pos );
+            words[value >>> 6] |= 1L << value;
+        }
+    }
+
+    /**
+     * Clear the bits of the values in a bitmap of 1024 words.
+     *
+     * @param words the bitmap
+     */
+    void andNotInto( long[] words ) {
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            char value = valueAt( pos );
+            words[value >>> 6] &= ~(1L << value);
+        }
+    }
+
+    /**
+     * Toggle the bits of the values in a bitmap of 1024 words.
+     *
+     * @param words the bitmap
+     */
+    void xorInto( long[] words ) {
+        for( int pos = nextPosition( 0 ); pos >= 0; pos = nextPosition( pos + 1 ) ) {
+            char value = valueAt( pos );
+            words[value >>> 6] ^= 1L << value;
+        }
+    }
+
+    /**
+     * Create the page implementation with the lowest memory for the values. The array is used by the new page.
+     *
+     * @param values the sorted values
+     * @param count the count of values in the array
+     * @return the new page or null if there are no values
+     */
+    static Page fromSorted( char[] values, int count ) {
+        if( count == 0 ) {
+            return null;
+        }
+        int runCount = 0;
+        for( int i = 0; i < count; i++ ) {
+            if( i == 0 || values[i - 1] + 1 != values[i] ) {
+                runCount++;
+            }
+        }
+        if( runCount * 4 <= sizeInBytes( count ) / 2 ) {
+            return new RunPage( values, count );
+        }
+        if( count <= ArrayPage.MAX_SIZE ) {
+            return new ArrayPage( values, count );
+        }
+        if( count < BitmapPage.MIN_SIZE ) {
+            return new HashPage( values, count );
+        }
+        return new BitmapPage( values, count );
+    }
+
+    /**
+     * Create the page implementation with the lowest memory for the bits of a bitmap. The bitmap is used by the new
+     * page.
+     *
+     * @param words the bitmap of 1024 words
+     * @return the new page or null if there are no values
+     */
+    static Page fromBitmap( long[] words ) {
+        int count = 0;
+        int runCount = 0;
+        long previous = 0;
+        for( long word : words ) {
+            count += Long.bitCount( word );
+            runCount += Long.bitCount( word & ~((word << 1) | (previous >>> 63)) );
+            previous = word;
+        }
+        if( count >= BitmapPage.MIN_SIZE && runCount * 4 > BitmapPage.SIZE_IN_BYTES / 2 ) {
+            return new BitmapPage( words, count );
+        }
+        char[] values = new char[count];
+        int idx = 0;
+        for( int i = 0; i < words.length; i++ ) {
+            for( long word = words[i]; word != 0; word &= word - 1 ) {
+                values[idx++] = (char)((i << 6) + Long.numberOfTrailingZeros( word ));
+            }
+        }
+        return fromSorted( values, count );
+    }
+
+    /**
+     * The memory of the page implementation without runs that is used for the count of values.
+     *
+     * @param count the count of values
+     * @return the size in bytes
+     */
+    private static int sizeInBytes( int count ) {
+        if( count <= ArrayPage.MAX_SIZE ) {
+            return count * 2;
+        }
+        if( count < BitmapPage.MIN_SIZE ) {
+            return HashPage.sizeInBytes( count );
+        }
+        return BitmapPage.SIZE_IN_BYTES;
+    }
+
+    /**
+     * The union of 2 pages. The pages are not changed.
+     *
+     * @param a the first page
+     * @param b the second page
+     * @return the new page or null if empty
+     */
+    static Page or( Page a, Page b ) {
+        if( a.size() + b.size() <= ArrayPage.MAX_SIZE ) {
+            char[] x = a.toSortedArray();
+            char[] y = b.toSortedArray();
+            char[] values = new char[x.length + y.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while( i < x.length && j < y.length ) {
+                if( x[i] < y[j] ) {
+                    values[count++] = x[i++];
+                } else if( x[i] > y[j] ) {
+                    values[count++] = y[j++];
+                } else {
+                    values[count++] = x[i++];
+                    j++;
+                }
+            }
+            while( i < x.length ) {
+                values[count++] = x[i++];
+            }
+            while( j < y.length ) {
+                values[count++] = y[j++];
+            }
+            return fromSorted( values, count );
+        }
+        long[] words = new long[1024];
+        a.orInto( words );
+        b.orInto( words );
+        return fromBitmap( words );
+    }
+
+    /**
+     * The intersection of 2 pages. The pages are not changed.
+     *
+     * @param a the first page
+     * @param b the second page
+     * @return the new page or null if empty
+     */
+    static Page and( Page a, Page b ) {
+        if( a instanceof BitmapPage && b instanceof BitmapPage ) {
+            long[] x = ((BitmapPage)a).words;
+            long[] y = ((BitmapPage)b).words;
+            long[] words = new long[1024];
+            for( int i = 0; i < words.length; i++ ) {
+                words[i] = x[i] & y[i];
+            }
+            return fromBitmap( words );
+        }
+        Page small = a.size() <= b.size() ? a : b;
+        Page large = small == a ? b : a;
+        char[] values = new char[small.size()];
+        int count = 0;
+        for( int pos = small.nextPosition( 0 ); pos >= 0; pos = small.nextPosition( pos + 1 ) ) {
+            char value = small.valueAt( pos );
+            if( large.contains( value ) ) {
+                values[count++] = value;
+            }
+        }
+        if( !small.isSorted() ) {
+            Arrays.sort( values, 0, count );
+        }
+        return fromSorted( values, count );
+    }
+
+    /**
+     * The values of the first page that are not in the second page. The pages are not changed.
+     *
+     * @param a the first page
+     * @param b the second page
+     * @return the new page or null if empty
+     */
+    static Page andNot( Page a, Page b ) {
+        if( a.size() > ArrayPage.MAX_SIZE ) {
+            long[] words = new long[1024];
+            a.orInto( words );
+            b.andNotInto( words );
+            return fromBitmap( words );
+        }
+        char[] values = new char[a.size()];
+        int count = 0;
+        for( int pos = a.nextPosition( 0 ); pos >= 0; pos = a.nextPosition( pos + 1 ) ) {
+            char value = a.valueAt( pos );
+            if( !b.contains( value ) ) {
+                values[count++] = value;
+            }
+        }
+        if( !a.isSorted() ) {
+            Arrays.sort( values, 0, count );
+        }
+        return fromSorted( values, count );
+    }
+
+    /**
+     * The values that are only in one of the 2 pages. The pages are not changed.
+     *
+     * @param a the first page
+     * @param b the second page
+     * @return the new page or null if empty
+     */
+    static Page xor( Page a, Page b ) {
+        long[] words = new long[1024];
+        a.orInto( words );
+        b.xorInto( words );
+        return fromBitmap( words );
+    }
+
+    /**
+     * Count the values of the intersection of 2 pages without creating the intersection.
+     *
+     * @param a the first page
+     * @param b the second page
+     * @return the count of values
+     */
+    static int andCardinality( Page a, Page b ) {
+        int count = 0;
+        if( a instanceof BitmapPage && b instanceof BitmapPage ) {
+            long[] x = ((BitmapPage)a).words;
+            long[] y = ((BitmapPage)b).words;
+            for( int i = 0; i < x.length; i++ ) {
+                count += Long.bitCount( x[i] & y[i] );
+            }
+            return count;
+        }
+        Page small = a.size() <= b.size() ? a : b;
+        Page large = small == a ? b : a;
+        for( int pos = small.nextPosition( 0 ); pos >= 0; pos = small.nextPosition( pos + 1 ) ) {
+            if( large.contains( small.valueAt( pos ) ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
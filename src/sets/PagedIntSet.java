@@ -1,32 +1,129 @@
 package sets;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.AbstractSet;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 
 /**
- * A very low memory set for integer values. The values are saved in a pages of char arrays. 
+ * A very low memory set for integer values. The values are saved in pages for the low 16 bits. Depending on the density
+ * of the values a page is a sorted array of chars, a hash table of chars, a bitmap or a list of runs of consecutive
+ * values. The pages are saved sorted by the high 16 bits, that the values are iterated in ascending order.
  */
-public class PagedIntSet extends AbstractSet<Integer> {
+public class PagedIntSet extends AbstractSet<Integer> implements IntSet, MemoryFootprint, Serializable {
 
-    private HashMap<Integer, Page> pages = new HashMap<>();
+    private static final long  serialVersionUID = 1L;
+
+    /**
+     * The result of the ordered queries like ceiling() if there is no such value. It is outside of the int range.
+     */
+    public static final long   NO_VALUE      = Long.MIN_VALUE;
+
+    private static final float RESIZE_FACTOR = 1.5f;
+
+    /**
+     * Below this count of values for one page, the values of a batch are added one by one to an existing page.
+     */
+    private static final int   BATCH_LIMIT   = 64;
+
+    private static final int   OR            = 0;
+
+    private static final int   AND           = 1;
+
+    private static final int   AND_NOT       = 2;
+
+    private static final int   XOR           = 3;
+
+    /**
+     * The first 4 bytes of the binary format, "PSET".
+     */
+    static final int           MAGIC         = 0x50534554;
+
+    static final int           VERSION       = 1;
+
+    /**
+     * The length of the header: magic, version, page count and size.
+     */
+    static final int           HEADER_LENGTH = 16;
+
+    /**
+     * The length of a directory entry: key (short), payload type (byte), reserved (byte), count of values (int) and
+     * offset of the payload (int).
+     */
+    static final int           ENTRY_LENGTH  = 12;
+
+    /**
+     * The sorted high 16 bits of the pages.
+     */
+    private transient short[]  keys          = new short[2];
+
+    private transient Page[]   pages         = new Page[2];
+
+    private transient int      pageCount;
+
+    private transient int      size;
+
+    private transient int      modCount;
+
+    /**
+     * A frozen set can not be changed and share its pages with the set from which it was frozen.
+     */
+    private transient boolean  frozen;
+
+    /**
+     * The prefix sums of the page sizes for rank() and select(). It is created lazy and rebuilt on the first call after
+     * a change of the set.
+     */
+    private transient RankIndex rankIndex;
 
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean add( Integer e ) {
-        int value = e.intValue();
-        Integer pageID = Integer.valueOf( value >> 16 );
-        Page page = pages.get( pageID );
-        if( page == null ) {
-            page = new Page();
-            pages.put( pageID, page );
+        return add( e.intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( int value ) {
+        checkMutable();
+        int idx = findPage( value >> 16 );
+        Page page;
+        if( idx < 0 ) {
+            idx = -idx - 1;
+            insertPage( idx, (short)(value >> 16), page = new ArrayPage() );
+        } else {
+            page = pages[idx];
+            if( page.shared ) {
+                if( page.contains( (char)value ) ) {
+                    return false;
+                }
+                page = page.copy();
+            }
+        }
+        int pageSize = page.size();
+        Page newPage = page.add( (char)value );
+        pages[idx] = newPage;
+        if( newPage.size() == pageSize ) {
+            return false;
         }
-        return page.add( (char)value );
+        size++;
+        modCount++;
+        return true;
     }
 
     /**
@@ -34,20 +131,39 @@ public boolean add( Integer e ) {
      */
     @Override
     public boolean remove( Object o ) {
-        int value = ((Integer)o).intValue();
-        Integer pageID = Integer.valueOf( value >> 16 );
-        Page page = pages.get( pageID );
-        if( page == null ) {
+        return remove( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove( int value ) {
+        checkMutable();
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
             return false;
         }
-        if( page.remove( (char)value ) ) {
-            if( page.size() == 0 ) {
-                pages.remove( pageID );
+        Page page = pages[idx];
+        if( page.shared ) {
+            if( !page.contains( (char)value ) ) {
+                return false;
             }
-            return true;
-        } else {
+            page = page.copy();
+        }
+        int pageSize = page.size();
+        Page newPage = page.remove( (char)value );
+        if( newPage.size() == pageSize ) {
             return false;
         }
+        if( newPage.size() == 0 ) {
+            removePage( idx );
+        } else {
+            pages[idx] = newPage;
+        }
+        size--;
+        modCount++;
+        return true;
     }
 
     /**
@@ -55,13 +171,39 @@ public boolean remove( Object o ) {
      */
     @Override
     public boolean contains( Object o ) {
-        int value = ((Integer)o).intValue();
-        Integer pageID = Integer.valueOf( value >> 16 );
-        Page page = pages.get( pageID );
-        if( page == null ) {
+        return contains( ((Integer)o).intValue() );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains( int value ) {
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
             return false;
         }
-        return page.contains( (char)value );
+        return pages[idx].contains( (char)value );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        checkMutable();
+        Arrays.fill( pages, 0, pageCount, null );
+        pageCount = 0;
+        size = 0;
+        modCount++;
     }
 
     /**
@@ -69,214 +211,1344 @@ public boolean contains( Object o ) {
      */
     @Override
     public Iterator<Integer> iterator() {
-        return new Iterator<Integer>() {
+        return intIterator();
+    }
+
+    /**
+     * Create an iterator over all values with a nextInt() without boxing.
+     *
+     * @return the iterator
+     */
+    Itr intIterator() {
+        return new Itr( Integer.MIN_VALUE, Integer.MAX_VALUE + 1L );
+    }
+
+    /**
+     * {@inheritDoc} The spliterator split at page boundaries and is sorted.
+     */
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return intSpliterator();
+    }
+
+    /**
+     * {@inheritDoc} The spliterator split at page boundaries and is sorted.
+     */
+    @Override
+    public Spliterator.OfInt intSpliterator() {
+        return new PageSpliterator( 0, pageCount, size );
+    }
+
+    /**
+     * The lowest value of the set.
+     *
+     * @return the value
+     * @throws NoSuchElementException if the set is empty
+     */
+    public int first() {
+        if( pageCount == 0 ) {
+            throw new NoSuchElementException();
+        }
+        return (keys[0] << 16) | pages[0].ceiling( 0 );
+    }
+
+    /**
+     * The highest value of the set.
+     *
+     * @return the value
+     * @throws NoSuchElementException if the set is empty
+     */
+    public int last() {
+        if( pageCount == 0 ) {
+            throw new NoSuchElementException();
+        }
+        return (keys[pageCount - 1] << 16) | pages[pageCount - 1].floor( Character.MAX_VALUE );
+    }
+
+    /**
+     * Find the lowest value that is greater or equals to the given value. Pages without such values are skipped.
+     *
+     * @param value the value
+     * @return the found value or NO_VALUE
+     */
+    public long ceiling( int value ) {
+        int idx = findPage( value >> 16 );
+        if( idx >= 0 ) {
+            int low = pages[idx].ceiling( value & 0xFFFF );
+            if( low >= 0 ) {
+                return (keys[idx] << 16) | low;
+            }
+            idx++;
+        } else {
+            idx = -idx - 1;
+        }
+        return idx < pageCount ? (keys[idx] << 16) | pages[idx].ceiling( 0 ) : NO_VALUE;
+    }
+
+    /**
+     * Find the highest value that is lower or equals to the given value. Pages without such values are skipped.
+     *
+     * @param value the value
+     * @return the found value or NO_VALUE
+     */
+    public long floor( int value ) {
+        int idx = findPage( value >> 16 );
+        if( idx >= 0 ) {
+            int low = pages[idx].floor( value & 0xFFFF );
+            if( low >= 0 ) {
+                return (keys[idx] << 16) | low;
+            }
+        } else {
+            idx = -idx - 1;
+        }
+        idx--;
+        return idx >= 0 ? (keys[idx] << 16) | pages[idx].floor( Character.MAX_VALUE ) : NO_VALUE;
+    }
+
+    /**
+     * Find the lowest value that is greater than the given value.
+     *
+     * @param value the value
+     * @return the found value or NO_VALUE
+     */
+    public long higher( int value ) {
+        return value == Integer.MAX_VALUE ? NO_VALUE : ceiling( value + 1 );
+    }
+
+    /**
+     * Find the highest value that is lower than the given value.
+     *
+     * @param value the value
+     * @return the found value or NO_VALUE
+     */
+    public long lower( int value ) {
+        return value == Integer.MIN_VALUE ? NO_VALUE : floor( value - 1 );
+    }
+
+    /**
+     * The count of values that are lower as the given value. The pages before are counted with a prefix sum of the page
+     * sizes, that only the values of one page must be counted. Together with select() it can be used for an offset
+     * based paging.
+     *
+     * @param value the value
+     * @return the count of lower values
+     */
+    public int rank( int value ) {
+        int[] offsets = pageOffsets();
+        int idx = findPage( value >> 16 );
+        if( idx < 0 ) {
+            return offsets[-idx - 1];
+        }
+        return offsets[idx] + pages[idx].rank( value & 0xFFFF );
+    }
+
+    /**
+     * Get the value at an index of the sorted values. The page is found with a binary search on a prefix sum of the
+     * page sizes.
+     *
+     * @param index the index of the value, the lowest value has the index 0
+     * @return the value
+     * @throws IndexOutOfBoundsException if the index is negative or not lower as the size
+     */
+    public int select( int index ) {
+        if( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+        }
+        int[] offsets = pageOffsets();
+        int idx = Arrays.binarySearch( offsets, 0, pageCount, index );
+        if( idx < 0 ) {
+            idx = -idx - 2; // the last page that start before the index
+        }
+        return (keys[idx] << 16) | pages[idx].select( index - offsets[idx] );
+    }
 
-            private Iterator<Entry<Integer, Page>> entries = pages.entrySet().iterator();
+    /**
+     * Get the prefix sums of the page sizes. The sums are rebuilt if the set was changed.
+     *
+     * @return the count of values before every page and the size at the end
+     */
+    private int[] pageOffsets() {
+        RankIndex index = rankIndex;
+        if( index == null || index.modCount != modCount ) {
+            int[] offsets = new int[pageCount + 1];
+            for( int i = 0; i < pageCount; i++ ) {
+                offsets[i + 1] = offsets[i] + pages[i].size();
+            }
+            rankIndex = index = new RankIndex( offsets, modCount );
+        }
+        return index.offsets;
+    }
+
+    /**
+     * A view of the values from fromValue inclusive to toValue exclusive. Changes of the view are written through to
+     * this set and changes of this set are visible in the view.
+     *
+     * @param fromValue the lowest value of the view
+     * @param toValue the end of the view, exclusive
+     * @return the view
+     */
+    public SubSet subSet( int fromValue, int toValue ) {
+        if( fromValue > toValue ) {
+            throw new IllegalArgumentException( "fromValue > toValue" );
+        }
+        return new SubSet( fromValue, toValue );
+    }
 
-            private Page          page;
+    /**
+     * A view of the values lower than toValue.
+     *
+     * @param toValue the end of the view, exclusive
+     * @return the view
+     */
+    public SubSet headSet( int toValue ) {
+        return new SubSet( Integer.MIN_VALUE, toValue );
+    }
 
-            private int              high;
+    /**
+     * A view of the values greater or equals to fromValue.
+     *
+     * @param fromValue the lowest value of the view
+     * @return the view
+     */
+    public SubSet tailSet( int fromValue ) {
+        return new SubSet( fromValue, Integer.MAX_VALUE + 1L );
+    }
 
-            private int              idx;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachInt( IntConsumer action ) {
+        for( int i = 0; i < pageCount; i++ ) {
+            pages[i].forEach( keys[i] << 16, action );
+        }
+    }
 
-            @Override
-            public boolean hasNext() {
-                if( page == null ) {
-                    if( entries.hasNext() ) {
-                        Entry<Integer, Page> entry = entries.next();
-                        high = entry.getKey() << 16;
-                        page = entry.getValue();
-                        idx = 0;
+    /**
+     * {@inheritDoc} The values are sorted.
+     */
+    @Override
+    public int[] toIntArray() {
+        int[] array = new int[size];
+        int idx = 0;
+        for( int i = 0; i < pageCount; i++ ) {
+            idx = pages[i].toIntArray( keys[i] << 16, array, idx );
+        }
+        return array;
+    }
+
+    /**
+     * {@inheritDoc} If the collection is a PagedIntSet then it is added page by page.
+     */
+    @Override
+    public boolean addAll( Collection<? extends Integer> c ) {
+        checkMutable();
+        if( c instanceof PagedIntSet ) {
+            int oldSize = size;
+            or( (PagedIntSet)c );
+            return oldSize != size;
+        }
+        return super.addAll( c );
+    }
+
+    /**
+     * {@inheritDoc} If the collection is a PagedIntSet then it is intersected page by page.
+     */
+    @Override
+    public boolean retainAll( Collection<?> c ) {
+        checkMutable();
+        if( c instanceof PagedIntSet ) {
+            int oldSize = size;
+            and( (PagedIntSet)c );
+            return oldSize != size;
+        }
+        return super.retainAll( c );
+    }
+
+    /**
+     * {@inheritDoc} If the collection is a PagedIntSet then it is removed page by page.
+     */
+    @Override
+    public boolean removeAll( Collection<?> c ) {
+        checkMutable();
+        if( c instanceof PagedIntSet ) {
+            int oldSize = size;
+            andNot( (PagedIntSet)c );
+            return oldSize != size;
+        }
+        return super.removeAll( c );
+    }
+
+    /**
+     * {@inheritDoc} Consecutive values with the same high 16 bits are added to their page at once. Sorted input is the
+     * fastest.
+     */
+    @Override
+    public boolean addAll( int[] values, int off, int len ) {
+        checkMutable();
+        int oldSize = size;
+        int end = off + len;
+        for( int i = off; i < end; ) {
+            int key = values[i] >> 16;
+            int j = i + 1;
+            while( j < end && values[j] >> 16 == key ) {
+                j++;
+            }
+            int idx = findPage( key );
+            if( idx < 0 ) {
+                insertPage( -idx - 1, (short)key, toPage( values, i, j ) );
+                size += pages[-idx - 1].size();
+            } else {
+                Page page = pages[idx];
+                int pageSize = page.size();
+                if( pageSize <= Character.MAX_VALUE ) { // skip full pages
+                    if( j - i < BATCH_LIMIT ) {
+                        if( page.shared ) {
+                            page = page.copy();
+                        }
+                        for( int k = i; k < j; k++ ) {
+                            page = page.add( (char)values[k] );
+                        }
                     } else {
-                        return false;
+                        page = Page.or( page, toPage( values, i, j ) );
                     }
+                    pages[idx] = page;
+                    size += page.size() - pageSize;
                 }
-                int value =  findNextIdx();
-                if( value >= 0 ) {
-                    return true;
-                }
-                page = null;
-                return hasNext();
             }
+            i = j;
+        }
+        if( size == oldSize ) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
 
-            @Override
-            public Integer next() {
-                if( page == null ) {
-                    if( !hasNext() ) {
-                        throw new NoSuchElementException();
+    /**
+     * {@inheritDoc} Consecutive values with the same high 16 bits are removed from their page at once.
+     */
+    @Override
+    public boolean removeAll( int[] values, int off, int len ) {
+        checkMutable();
+        int oldSize = size;
+        int end = off + len;
+        for( int i = off; i < end; ) {
+            int key = values[i] >> 16;
+            int j = i + 1;
+            while( j < end && values[j] >> 16 == key ) {
+                j++;
+            }
+            int idx = findPage( key );
+            if( idx >= 0 ) {
+                Page page = pages[idx];
+                int pageSize = page.size();
+                if( j - i < BATCH_LIMIT ) {
+                    if( page.shared ) {
+                        page = page.copy();
                     }
-                }
-                int value =  findNextIdx();
-                if( value >= 0 ) {
-                    idx++;
-                    return Integer.valueOf( high | value );
-                }
-                page = null;
-                return next();
-            }
-            
-            private int findNextIdx() {
-                char[] values = page.elements;
-                while( idx < values.length ) {
-                    if( values[idx] != page.notSetValue ) {
-                        return values[idx];
+                    for( int k = i; k < j && page.size() > 0; k++ ) {
+                        page = page.remove( (char)values[k] );
                     }
-                    idx++;
+                } else {
+                    page = Page.andNot( page, toPage( values, i, j ) );
+                }
+                if( page == null || page.size() == 0 ) {
+                    removePage( idx );
+                    size -= pageSize;
+                } else {
+                    pages[idx] = page;
+                    size -= pageSize - page.size();
                 }
-                return -1;
             }
-        };
+            i = j;
+        }
+        if( size == oldSize ) {
+            return false;
+        }
+        modCount++;
+        return true;
     }
 
     /**
-     * {@inheritDoc}
+     * Create a page with the low 16 bits of a range of values. The page is created with the right size at once.
+     *
+     * @param values the values with the same high 16 bits
+     * @param from the first index
+     * @param to the end index, exclusive
+     * @return the page
      */
-    @Override
-    public int size() {
+    private static Page toPage( int[] values, int from, int to ) {
+        char[] lows = new char[to - from];
+        boolean sorted = true;
+        for( int i = from; i < to; i++ ) {
+            char low = (char)values[i];
+            lows[i - from] = low;
+            sorted &= i == from || lows[i - from - 1] <= low;
+        }
+        if( !sorted ) {
+            Arrays.sort( lows );
+        }
+        // remove duplicates
         int count = 0;
-        for( Page page : pages.values() ) {
-            count += page.size;
+        for( int i = 0; i < lows.length; i++ ) {
+            if( i == 0 || lows[i] != lows[count - 1] ) {
+                lows[count++] = lows[i];
+            }
+        }
+        return Page.fromSorted( lows, count );
+    }
+
+    /**
+     * Add all values of the other set to this set.
+     *
+     * @param other the other set
+     */
+    public void or( PagedIntSet other ) {
+        checkMutable();
+        replaceWith( combine( this, other, OR, false ) );
+    }
+
+    /**
+     * Remove all values from this set that are not in the other set.
+     *
+     * @param other the other set
+     */
+    public void and( PagedIntSet other ) {
+        checkMutable();
+        replaceWith( combine( this, other, AND, false ) );
+    }
+
+    /**
+     * Remove all values of the other set from this set.
+     *
+     * @param other the other set
+     */
+    public void andNot( PagedIntSet other ) {
+        checkMutable();
+        replaceWith( combine( this, other, AND_NOT, false ) );
+    }
+
+    /**
+     * Keep only the values that are in exactly one of the two sets.
+     *
+     * @param other the other set
+     */
+    public void xor( PagedIntSet other ) {
+        checkMutable();
+        replaceWith( combine( this, other, XOR, false ) );
+    }
+
+    /**
+     * The union of two sets.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return a new set
+     */
+    public static PagedIntSet or( PagedIntSet a, PagedIntSet b ) {
+        return combine( a, b, OR, true );
+    }
+
+    /**
+     * The intersection of two sets.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return a new set
+     */
+    public static PagedIntSet and( PagedIntSet a, PagedIntSet b ) {
+        return combine( a, b, AND, true );
+    }
+
+    /**
+     * The values of the first set that are not in the second set.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return a new set
+     */
+    public static PagedIntSet andNot( PagedIntSet a, PagedIntSet b ) {
+        return combine( a, b, AND_NOT, true );
+    }
+
+    /**
+     * The values that are in exactly one of the two sets.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return a new set
+     */
+    public static PagedIntSet xor( PagedIntSet a, PagedIntSet b ) {
+        return combine( a, b, XOR, true );
+    }
+
+    /**
+     * The size of the intersection of two sets without creating it.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return the count of values in both sets
+     */
+    public static int andCardinality( PagedIntSet a, PagedIntSet b ) {
+        int count = 0;
+        for( int i = 0, j = 0; i < a.pageCount && j < b.pageCount; ) {
+            int keyA = a.keys[i];
+            int keyB = b.keys[j];
+            if( keyA < keyB ) {
+                i++;
+            } else if( keyA > keyB ) {
+                j++;
+            } else {
+                count += Page.andCardinality( a.pages[i++], b.pages[j++] );
+            }
         }
         return count;
     }
 
     /**
-     * A page that save until 65656 values.
+     * The size of the union of two sets without creating it.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @return the count of values in any of the sets
+     */
+    public static int orCardinality( PagedIntSet a, PagedIntSet b ) {
+        return a.size + b.size - andCardinality( a, b );
+    }
+
+    /**
+     * Combine two sets page by page. Pages with keys in only one set are not combined but taken or skipped.
+     *
+     * @param a the first set
+     * @param b the second set
+     * @param op the operation OR, AND, AND_NOT or XOR
+     * @param copyA true, if the not combined pages of a must be copied; false if they can be shared with the result
+     * @return the new set
      */
-    private static class Page {
+    private static PagedIntSet combine( PagedIntSet a, PagedIntSet b, int op, boolean copyA ) {
+        PagedIntSet result = new PagedIntSet();
+        boolean takeA = op != AND;
+        boolean takeB = op == OR || op == XOR;
+        int i = 0;
+        int j = 0;
+        while( i < a.pageCount && j < b.pageCount ) {
+            short keyA = a.keys[i];
+            short keyB = b.keys[j];
+            if( keyA < keyB ) {
+                if( takeA ) {
+                    result.appendPage( keyA, copyA ? a.pages[i].copy() : a.pages[i] );
+                }
+                i++;
+            } else if( keyA > keyB ) {
+                if( takeB ) {
+                    result.appendPage( keyB, b.pages[j].copy() );
+                }
+                j++;
+            } else {
+                Page page;
+                switch( op ) {
+                    case OR:
+                        page = Page.or( a.pages[i], b.pages[j] );
+                        break;
+                    case AND:
+                        page = Page.and( a.pages[i], b.pages[j] );
+                        break;
+                    case AND_NOT:
+                        page = Page.andNot( a.pages[i], b.pages[j] );
+                        break;
+                    default:
+                        page = Page.xor( a.pages[i], b.pages[j] );
+                }
+                if( page != null ) {
+                    result.appendPage( keyA, page );
+                }
+                i++;
+                j++;
+            }
+        }
+        for( ; takeA && i < a.pageCount; i++ ) {
+            result.appendPage( a.keys[i], copyA ? a.pages[i].copy() : a.pages[i] );
+        }
+        for( ; takeB && j < b.pageCount; j++ ) {
+            result.appendPage( b.keys[j], b.pages[j].copy() );
+        }
+        return result;
+    }
+
+    /**
+     * Create an immutable snapshot of the set. The snapshot share the pages with this set, that the cost depends only
+     * on the count of pages. A later change of this set copy the touched page first. The snapshot is not changed by
+     * later changes of this set and can be read from other threads if it is safely published.
+     *
+     * @return the frozen snapshot or this if this set is already frozen
+     */
+    public PagedIntSet freeze() {
+        if( frozen ) {
+            return this;
+        }
+        for( int i = 0; i < pageCount; i++ ) {
+            pages[i].shared = true;
+        }
+        PagedIntSet snapshot = new PagedIntSet();
+        snapshot.keys = Arrays.copyOf( keys, pageCount );
+        snapshot.pages = Arrays.copyOf( pages, pageCount );
+        snapshot.pageCount = pageCount;
+        snapshot.size = size;
+        snapshot.frozen = true;
+        return snapshot;
+    }
+
+    /**
+     * Create a frozen copy of the set with the minimum memory. Every page is a new page with the exact size. Hash
+     * tables are replaced with sorted arrays, that all pages can be read in order without sorting.
+     *
+     * @return the compact frozen copy
+     */
+    public PagedIntSet compact() {
+        PagedIntSet copy = new PagedIntSet();
+        copy.keys = Arrays.copyOf( keys, pageCount );
+        copy.pages = new Page[pageCount];
+        for( int i = 0; i < pageCount; i++ ) {
+            char[] values = pages[i].toSortedArray();
+            Page page = Page.fromSorted( values, values.length );
+            if( page instanceof HashPage ) {
+                page = new ArrayPage( values, values.length );
+            }
+            page.shared = true;
+            copy.pages[i] = page;
+        }
+        copy.pageCount = pageCount;
+        copy.size = size;
+        copy.frozen = true;
+        return copy;
+    }
+
+    /**
+     * Release the allocated but not used capacity of the directory and of the pages. Unlike compact() the set is changed
+     * in place and stays mutable.
+     */
+    public void trimToSize() {
+        checkMutable();
+        keys = Arrays.copyOf( keys, pageCount );
+        pages = Arrays.copyOf( pages, pageCount );
+        for( int i = 0; i < pageCount; i++ ) {
+            Page page = pages[i];
+            if( page.slackInBytes() > 0 ) {
+                char[] values = page.toSortedArray();
+                pages[i] = Page.fromSorted( values, values.length );
+            }
+        }
+        modCount++;
+    }
+
+    /**
+     * If the set is a frozen snapshot that can not be changed.
+     *
+     * @return true, if frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * {@inheritDoc} Pages that are shared with a frozen snapshot are counted in every set.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        Page[] pages = this.pages;
+        long bytes = MemoryEstimate.object( 3 * MemoryEstimate.REFERENCE + 13 ) + MemoryEstimate.array( keys.length, 2 )
+                        + MemoryEstimate.array( pages.length, MemoryEstimate.REFERENCE );
+        for( int i = 0; i < pageCount && i < pages.length; i++ ) {
+            bytes += pages[i].estimatedSizeInBytes();
+        }
+        RankIndex index = rankIndex;
+        if( index != null ) {
+            bytes += MemoryEstimate.object( MemoryEstimate.REFERENCE + 4 )
+                            + MemoryEstimate.array( index.offsets.length, 4 );
+        }
+        return bytes;
+    }
+
+    /**
+     * The count of pages. Every page save the values with the same high 16 bits.
+     *
+     * @return the count
+     */
+    public int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * A histogram of the fill level of the pages. The entry i is the count of pages with 2^i up to 2^(i+1)-1 values.
+     * The last entry 16 is the count of full pages.
+     *
+     * @return the histogram with 17 entries
+     */
+    public int[] pageFillHistogram() {
+        Page[] pages = this.pages;
+        int[] histogram = new int[17];
+        for( int i = 0; i < pageCount && i < pages.length; i++ ) {
+            histogram[31 - Integer.numberOfLeadingZeros( pages[i].size() )]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * The memory of the allocated but not used capacity of the directory and of the pages. A bloated set has a high
+     * slack in relation to estimatedSizeInBytes().
+     *
+     * @return the size in bytes
+     */
+    public long slackInBytes() {
+        Page[] pages = this.pages;
+        long bytes = (long)(pages.length - pageCount) * (2 + MemoryEstimate.REFERENCE);
+        for( int i = 0; i < pageCount && i < pages.length; i++ ) {
+            bytes += pages[i].slackInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Throw an exception if the set is frozen.
+     */
+    private void checkMutable() {
+        if( frozen ) {
+            throw new UnsupportedOperationException( "frozen" );
+        }
+    }
+
+    /**
+     * Write the set in a versioned binary format. All numbers are big endian. After a header follows a directory
+     * entry for every page and then the payloads of the pages. Every payload start at an offset that is a multiple of
+     * 8. The result can be read with read() or mapped with ImmutablePagedIntSet.
+     *
+     * @param out the target
+     * @throws IOException if any I/O error occur
+     */
+    public void write( DataOutput out ) throws IOException {
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        out.writeInt( pageCount );
+        out.writeInt( size );
+        int offset = payloadOffset( pageCount );
+        for( int i = 0; i < pageCount; i++ ) {
+            Page page = pages[i];
+            out.writeShort( keys[i] );
+            out.writeByte( page.formatType() );
+            out.writeByte( 0 );
+            out.writeInt( page.size() );
+            out.writeInt( offset );
+            offset = align( offset + page.formatLength() );
+        }
+        offset = HEADER_LENGTH + pageCount * ENTRY_LENGTH;
+        for( int i = 0; i < pageCount; i++ ) {
+            for( ; offset < align( offset ); offset++ ) {
+                out.writeByte( 0 );
+            }
+            pages[i].write( out );
+            offset += pages[i].formatLength();
+        }
+    }
+
+    /**
+     * Read a set that was written with write().
+     *
+     * @param in the source
+     * @return the new set
+     * @throws IOException if any I/O error occur or the data are not a valid set
+     */
+    public static PagedIntSet read( DataInput in ) throws IOException {
+        int pageCount = readHeader( in.readInt(), in.readInt(), in.readInt() );
+        int size = in.readInt();
+        short[] keys = new short[pageCount];
+        int[] types = new int[pageCount];
+        int[] counts = new int[pageCount];
+        int[] offsets = new int[pageCount];
+        for( int i = 0; i < pageCount; i++ ) {
+            keys[i] = in.readShort();
+            types[i] = in.readByte();
+            in.readByte();
+            counts[i] = in.readInt();
+            offsets[i] = in.readInt();
+        }
+        PagedIntSet set = new PagedIntSet();
+        int offset = HEADER_LENGTH + pageCount * ENTRY_LENGTH;
+        for( int i = 0; i < pageCount; i++ ) {
+            if( offsets[i] < offset || (i > 0 && keys[i - 1] >= keys[i]) ) {
+                throw new IOException( "Invalid page directory" );
+            }
+            for( ; offset < offsets[i]; offset++ ) {
+                in.readByte();
+            }
+            Page page = Page.read( in, types[i], counts[i] );
+            set.appendPage( keys[i], page );
+            offset += page.formatLength();
+        }
+        if( set.size != size ) {
+            throw new IOException( "Invalid size: " + size );
+        }
+        return set;
+    }
+
+    /**
+     * Check the start of the binary format.
+     *
+     * @param magic the first int
+     * @param version the format version
+     * @param pageCount the count of pages
+     * @return the count of pages
+     * @throws IOException if the data are not a valid set
+     */
+    static int readHeader( int magic, int version, int pageCount ) throws IOException {
+        if( magic != MAGIC ) {
+            throw new IOException( "No PagedIntSet data" );
+        }
+        if( version != VERSION ) {
+            throw new IOException( "Unsupported format version: " + version );
+        }
+        if( pageCount < 0 || pageCount > 0x10000 ) {
+            throw new IOException( "Invalid page count: " + pageCount );
+        }
+        return pageCount;
+    }
 
-        private static final float LOAD_FACTOR   = 0.75f;
+    /**
+     * The offset of the first payload in the binary format.
+     *
+     * @param pageCount the count of pages
+     * @return the offset
+     */
+    static int payloadOffset( int pageCount ) {
+        return align( HEADER_LENGTH + pageCount * ENTRY_LENGTH );
+    }
 
-        private static final float RESIZE_FACTOR = 1.5f;
+    /**
+     * Round up to a multiple of 8 that the words of a bitmap can be read aligned.
+     *
+     * @param offset the offset
+     * @return the aligned offset
+     */
+    private static int align( int offset ) {
+        return (offset + 7) & ~7;
+    }
 
-        private char[]              elements      = new char[3];
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        write( out );
+    }
 
-        private int                size;
+    private void readObject( ObjectInputStream in ) throws IOException {
+        replaceWith( read( in ) );
+    }
 
-        private char              notSetValue   = Character.MAX_VALUE;
+    /**
+     * Take the pages of another set.
+     *
+     * @param other the other set that is not used anymore
+     */
+    private void replaceWith( PagedIntSet other ) {
+        keys = other.keys;
+        pages = other.pages;
+        pageCount = other.pageCount;
+        size = other.size;
+        modCount++;
+    }
+
+    /**
+     * Add a page after all other pages.
+     *
+     * @param key the high 16 bits of the values, larger as all existing keys
+     * @param page the page
+     */
+    void appendPage( short key, Page page ) {
+        insertPage( pageCount, key, page );
+        size += page.size();
+    }
+
+    /**
+     * Find the page with a binary search.
+     *
+     * @param key the high 16 bits of the value
+     * @return the index of the page or (-(insertion point) - 1) if there is no page
+     */
+    private int findPage( int key ) {
+        int low = 0;
+        int high = pageCount - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            int midKey = keys[mid];
+            if( midKey < key ) {
+                low = mid + 1;
+            } else if( midKey > key ) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Insert a new page and move the following pages.
+     *
+     * @param idx the index of the new page
+     * @param key the high 16 bits of the values
+     * @param page the page
+     */
+    private void insertPage( int idx, short key, Page page ) {
+        if( pageCount == keys.length ) {
+            int capacity = java.lang.Math.max( (int)(RESIZE_FACTOR * pageCount), pageCount + 1 );
+            keys = Arrays.copyOf( keys, capacity );
+            pages = Arrays.copyOf( pages, capacity );
+        }
+        System.arraycopy( keys, idx, keys, idx + 1, pageCount - idx );
+        System.arraycopy( pages, idx, pages, idx + 1, pageCount - idx );
+        keys[idx] = key;
+        pages[idx] = page;
+        pageCount++;
+    }
+
+    /**
+     * Remove a page and move the following pages.
+     *
+     * @param idx the index of the page
+     */
+    private void removePage( int idx ) {
+        pageCount--;
+        System.arraycopy( keys, idx + 1, keys, idx, pageCount - idx );
+        System.arraycopy( pages, idx + 1, pages, idx, pageCount - idx );
+        pages[pageCount] = null;
+    }
+
+    /**
+     * The prefix sums of the page sizes together with the modCount of the set for which they are valid. The fields are
+     * final, that a frozen set can create it lazy also if it is read from multiple threads.
+     */
+    private static class RankIndex {
+
+        private final int[] offsets;
+
+        private final int   modCount;
+
+        RankIndex( int[] offsets, int modCount ) {
+            this.offsets = offsets;
+            this.modCount = modCount;
+        }
+    }
+
+    /**
+     * Spliterator over a range of pages in ascending order. It split at page boundaries.
+     */
+    private class PageSpliterator implements Spliterator.OfInt {
+
+        private int       pageIdx;
+
+        private final int fence;
 
         /**
-         * Create a new instance.
+         * The current page or null if the page at pageIdx is not started.
          */
-        Page() {
-            Arrays.fill( elements, notSetValue );
-        }
-
-        boolean add( char obj ) {
-            if( obj == notSetValue ) {
-                // collision
-                switch( size ) {
-                    case Character.MAX_VALUE:
-                        size++;
-                        return true; // all possible values are set now
-                    case Character.MAX_VALUE + 1:
-                        return false; // all possible values are set already
-                    default:
-                        char newNotSet = (char)(notSetValue-1);
-                        while( contains( newNotSet) ) newNotSet--;
-                        for( int i = 0; i < elements.length; i++ ) {
-                            if( elements[i] == notSetValue ) {
-                                elements[i] = newNotSet;
-                            }
-                        }
-                        notSetValue = newNotSet;
+        private Page      page;
+
+        private int       high;
+
+        /**
+         * The position in the page or the index in the sorted copy.
+         */
+        private int       pos;
+
+        /**
+         * The sorted copy of an unsorted page or null.
+         */
+        private char[]    copy;
+
+        /**
+         * The exact count of the remaining values.
+         */
+        private long      remaining;
+
+        private final int expectedModCount = modCount;
+
+        /**
+         * Create a spliterator.
+         *
+         * @param pageIdx the first page
+         * @param fence the end page, exclusive
+         * @param remaining the count of values in the pages
+         */
+        PageSpliterator( int pageIdx, int fence, long remaining ) {
+            this.pageIdx = pageIdx;
+            this.fence = fence;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            // the first page that is not started
+            int from = page == null ? pageIdx : pageIdx + 1;
+            if( fence - from < (page == null ? 2 : 1) ) {
+                return null;
+            }
+            int mid = (from + fence) >>> 1;
+            long suffix = 0;
+            for( int i = mid; i < fence; i++ ) {
+                suffix += pages[i].size();
+            }
+            // the prefix take over the started page
+            PageSpliterator prefix = new PageSpliterator( pageIdx, mid, remaining - suffix );
+            prefix.page = page;
+            prefix.high = high;
+            prefix.pos = pos;
+            prefix.copy = copy;
+            pageIdx = mid;
+            page = null;
+            copy = null;
+            remaining = suffix;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance( IntConsumer action ) {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            if( page == null ) {
+                if( pageIdx >= fence ) {
+                    return false;
                 }
+                startPage();
             }
-            int slot = findSlot( obj );
-            if( elements[slot] != notSetValue ) {
-                return false;
+            int value;
+            if( copy != null ) {
+                value = high | copy[pos];
+                pos = ++pos < copy.length ? pos : -1;
+            } else {
+                value = high | page.valueAt( pos );
+                pos = page.nextPosition( pos + 1 );
             }
-            if( (size + 1) >= (LOAD_FACTOR * elements.length) ) {
-                resize();
-                slot = findSlot( obj );
+            if( pos < 0 ) {
+                page = null;
+                copy = null;
+                pageIdx++;
             }
-            elements[slot] = obj;
-            size++;
+            remaining--;
+            action.accept( value );
             return true;
         }
 
-        boolean remove( char obj ) {
-            if( size > Character.MAX_VALUE ) { // all possible values are set
-                size--;
-                notSetValue = obj;
-                return true;
+        @Override
+        public void forEachRemaining( IntConsumer action ) {
+            while( page != null ) {
+                tryAdvance( action );
             }
-            int slot = findSlot( obj );
-            if( elements[slot] == notSetValue ) {
-                return false;
+            for( ; pageIdx < fence; pageIdx++ ) {
+                Page current = pages[pageIdx];
+                int currentHigh = keys[pageIdx] << 16;
+                if( current.isSorted() ) {
+                    current.forEach( currentHigh, action );
+                } else {
+                    for( char value : current.toSortedArray() ) {
+                        action.accept( currentHigh | value );
+                    }
+                }
             }
-            elements[slot] = notSetValue;
-            tampCollisions( slot );
-            size--;
-            return true;
+            remaining = 0;
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
         }
 
-        boolean contains( char o ) {
-            if( size > Character.MAX_VALUE ) {
-                return true; // all possible values are set
+        /**
+         * {@inheritDoc} The values are in natural order.
+         */
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+
+        /**
+         * Start to iterate the page at pageIdx. A page is never empty.
+         */
+        private void startPage() {
+            page = pages[pageIdx];
+            high = keys[pageIdx] << 16;
+            if( page.isSorted() ) {
+                copy = null;
+                pos = page.nextPosition( 0 );
+            } else {
+                copy = page.toSortedArray();
+                pos = 0;
             }
-            int slot = findSlot( o );
-            return elements[slot] != notSetValue;
+        }
+    }
+
+    /**
+     * A view of a range of values of the PagedIntSet.
+     */
+    public class SubSet extends AbstractSet<Integer> implements IntSet {
+
+        private final long from;
+
+        private final long to;
+
+        /**
+         * Create a new view.
+         *
+         * @param from the lowest value
+         * @param to the end of the range, exclusive
+         */
+        SubSet( long from, long to ) {
+            this.from = from;
+            this.to = to;
         }
 
-        int size() {
-            return size;
+        private boolean inRange( int value ) {
+            return from <= value && value < to;
         }
 
         /**
-         * Remove possible collisions after a delete.
-         * 
-         * @param index the start index (position of delete)
+         * {@inheritDoc}
          */
-        private void tampCollisions( int index ) {
-            for( int i = nextIndex( index ); elements[i] != notSetValue; i = nextIndex( i ) ) {
-                int slot = findSlot( elements[i] );
-                if( slot != i ) {
-                    elements[slot] = elements[i];
-                    elements[i] = notSetValue;
-                }
+        @Override
+        public boolean add( Integer e ) {
+            return add( e.intValue() );
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws IllegalArgumentException if the value is outside of the range
+         */
+        @Override
+        public boolean add( int value ) {
+            if( !inRange( value ) ) {
+                throw new IllegalArgumentException( "value out of range: " + value );
             }
+            return PagedIntSet.this.add( value );
         }
 
         /**
-         * Resize the the size of the table.
+         * {@inheritDoc}
          */
-        private void resize() {
-            char[] oldElements = elements;
-            int capacity = java.lang.Math.max( (int)(RESIZE_FACTOR * elements.length), elements.length + 1 );
-            elements = new char[capacity];
-            Arrays.fill( elements, notSetValue );
-            size = 0;
-            for( int i = 0; i < oldElements.length; ++i )
-                if( oldElements[i] != notSetValue ) {
-                    add( oldElements[i] );
-                }
+        @Override
+        public boolean remove( Object o ) {
+            return remove( ((Integer)o).intValue() );
         }
 
         /**
-         * Find the object or a free place.
-         * 
-         * @param obj the new object
-         * @return the index to the obj or null
+         * {@inheritDoc}
          */
-        private int findSlot( int obj ) {
-            // We multiply by 2 to add a gap to avoid large clusters if there continue values
-            for( int i = java.lang.Math.abs( obj * 3  ) % elements.length;; i = nextIndex( i ) ) {
-                if( elements[i] == notSetValue || elements[i] == obj ) {
-                    return i;
-                }
+        @Override
+        public boolean remove( int value ) {
+            return inRange( value ) && PagedIntSet.this.remove( value );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean contains( Object o ) {
+            return contains( ((Integer)o).intValue() );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean contains( int value ) {
+            return inRange( value ) && PagedIntSet.this.contains( value );
+        }
+
+        /**
+         * {@inheritDoc} The size is the difference of the ranks of the range bounds, only the pages of the bounds are
+         * counted.
+         */
+        @Override
+        public int size() {
+            int toRank = to > Integer.MAX_VALUE ? PagedIntSet.this.size : rank( (int)to );
+            return toRank - rank( (int)from );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isEmpty() {
+            return !new Itr( from, to ).hasNext();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Itr( from, to );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void forEachInt( IntConsumer action ) {
+            for( Itr iterator = new Itr( from, to ); iterator.hasNext(); ) {
+                action.accept( iterator.nextInt() );
             }
         }
 
         /**
-         * The next index rotating
-         * 
-         * @param index current index
-         * @return the next index
+         * {@inheritDoc} The values are sorted.
          */
-        private int nextIndex( int index ) {
-            return (index + 1) % elements.length;
+        @Override
+        public int[] toIntArray() {
+            int[] array = new int[size()];
+            int idx = 0;
+            for( Itr iterator = new Itr( from, to ); iterator.hasNext(); ) {
+                array[idx++] = iterator.nextInt();
+            }
+            return array;
         }
     }
 
+    /**
+     * Iterator over the pages in the order of the keys. The values of pages with unsorted values are copied sorted
+     * before, that all values are returned in ascending order.
+     */
+    class Itr implements Iterator<Integer> {
+
+        private final long from;
+
+        private final long to;
+
+        private int     pageIdx;
+
+        private Page    page;
+
+        private int     high;
+
+        /**
+         * The position in the page or the index in the sorted copy.
+         */
+        private int     pos              = -1;
+
+        /**
+         * The sorted copy of an unsorted page or null.
+         */
+        private char[]  copy;
+
+        private int     lastValue;
+
+        private boolean canRemove;
+
+        private int     expectedModCount = modCount;
+
+        /**
+         * Create an iterator over a range of values.
+         *
+         * @param from the lowest value
+         * @param to the end of the range, exclusive
+         */
+        Itr( long from, long to ) {
+            this.from = from;
+            this.to = to;
+            int idx = findPage( (int)from >> 16 );
+            pageIdx = (idx < 0 ? -idx - 1 : idx) - 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            while( pos < 0 ) {
+                if( ++pageIdx >= pageCount ) {
+                    pageIdx = pageCount;
+                    return false;
+                }
+                startPage( keys[pageIdx] == (int)from >> 16 ? (int)from & 0xFFFF : 0 );
+            }
+            return (copy != null ? high | copy[pos] : high | page.valueAt( pos )) < to;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        /**
+         * The next value without boxing.
+         *
+         * @return the value
+         */
+        int nextInt() {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            int value;
+            if( copy != null ) {
+                value = high | copy[pos];
+                pos = ++pos < copy.length ? pos : -1;
+            } else {
+                value = high | page.valueAt( pos );
+                pos = page.nextPosition( pos + 1 );
+            }
+            lastValue = value;
+            canRemove = true;
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            if( !canRemove ) {
+                throw new IllegalStateException();
+            }
+            if( modCount != expectedModCount ) {
+                throw new ConcurrentModificationException();
+            }
+            canRemove = false;
+            int count = pageCount;
+            PagedIntSet.this.remove( lastValue );
+            expectedModCount = modCount;
+            if( count != pageCount ) {
+                // the page was removed, continue with the next page
+                pageIdx--;
+                pos = -1;
+            } else if( copy == null ) {
+                // the page can be changed or replaced
+                startPage( (char)lastValue + 1 );
+            }
+        }
+
+        /**
+         * Start to iterate the current page.
+         *
+         * @param value the lowest value
+         */
+        private void startPage( int value ) {
+            page = pages[pageIdx];
+            high = keys[pageIdx] << 16;
+            if( page.isSorted() ) {
+                copy = null;
+                pos = page.ceilingPosition( value );
+            } else {
+                copy = page.toSortedArray();
+                pos = Arrays.binarySearch( copy, (char)value );
+                if( pos < 0 ) {
+                    pos = -pos - 1;
+                }
+                if( pos >= copy.length ) {
+                    pos = -1;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,482 @@
+package sets;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * Build a PagedIntSet from a large count of values without boxing and without a page change for every value. As long
+ * as the values are added in ascending order every page is created once with its final size. Values after the first
+ * unsorted value are collected in a buffer of fixed size. A full buffer is sorted and written as a run to a temporary
+ * file. build() merges the runs, that the heap need only the buffer and the resulting set.
+ * <p>
+ * A builder is not thread safe. It can be reused after build(). Call close() to delete the temporary files if build()
+ * is not called.
+ */
+public class PagedIntSetBuilder implements Closeable {
+
+    /**
+     * The default size of the buffer for unsorted values, 16 MB.
+     */
+    public static final int  DEFAULT_BUFFER_SIZE = 1 << 22;
+
+    /**
+     * The count of values that are read or written at once.
+     */
+    private static final int CHUNK_SIZE          = 8192;
+
+    private final int        bufferSize;
+
+    private final Path       tempDirectory;
+
+    /**
+     * The target for the sorted values until the first unsorted value.
+     */
+    private PageWriter       writer;
+
+    /**
+     * True, until a value is lower as the previous value.
+     */
+    private boolean          sorted;
+
+    private int[]            buffer;
+
+    private int              count;
+
+    /**
+     * The temporary files with sorted and distinct values.
+     */
+    private final List<Path> runs                = new ArrayList<>();
+
+    /**
+     * Create a new instance with the default buffer size and the default temporary directory.
+     */
+    public PagedIntSetBuilder() {
+        this( DEFAULT_BUFFER_SIZE, null );
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param bufferSize the count of unsorted values that are hold on the heap before they are written to a temporary
+     *            file
+     * @param tempDirectory the directory for the temporary files or null for the default temporary directory
+     */
+    public PagedIntSetBuilder( int bufferSize, Path tempDirectory ) {
+        if( bufferSize <= 0 ) {
+            throw new IllegalArgumentException( "bufferSize: " + bufferSize );
+        }
+        this.bufferSize = bufferSize;
+        this.tempDirectory = tempDirectory;
+        reset();
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     * @throws IOException if a run can not be written
+     */
+    public void add( int value ) throws IOException {
+        if( sorted ) {
+            if( value > writer.last ) {
+                writer.append( value );
+                return;
+            }
+            if( value == writer.last ) {
+                return;
+            }
+            sorted = false;
+        }
+        ensureSpace();
+        buffer[count++] = value;
+    }
+
+    /**
+     * Add a range of values of an array.
+     *
+     * @param values the values
+     * @param off the index of the first value
+     * @param len the count of values
+     * @throws IOException if a run can not be written
+     */
+    public void addAll( int[] values, int off, int len ) throws IOException {
+        int end = off + len;
+        while( off < end && sorted ) {
+            add( values[off++] );
+        }
+        while( off < end ) {
+            ensureSpace();
+            int length = java.lang.Math.min( end - off, buffer.length - count );
+            System.arraycopy( values, off, buffer, count, length );
+            count += length;
+            off += length;
+        }
+    }
+
+    /**
+     * Add all values of a stream. A parallel stream is consumed in its encounter order.
+     *
+     * @param stream the values
+     * @throws IOException if a run can not be written
+     */
+    public void addAll( IntStream stream ) throws IOException {
+        int[] chunk = new int[CHUNK_SIZE];
+        int length = 0;
+        for( PrimitiveIterator.OfInt iterator = stream.iterator(); iterator.hasNext(); ) {
+            chunk[length++] = iterator.nextInt();
+            if( length == chunk.length ) {
+                addAll( chunk, 0, length );
+                length = 0;
+            }
+        }
+        addAll( chunk, 0, length );
+    }
+
+    /**
+     * Add the values of a stream of raw 4 byte values until the end of the stream. The values of a DataOutputStream
+     * have the byte order BIG_ENDIAN. The stream is not closed.
+     *
+     * @param in the stream, for example a DataInputStream
+     * @param order the byte order of the values
+     * @throws IOException if any I/O error occur or the length of the stream is not a multiple of 4
+     */
+    public void addAll( InputStream in, ByteOrder order ) throws IOException {
+        byte[] bytes = new byte[CHUNK_SIZE * 4];
+        int[] chunk = new int[CHUNK_SIZE];
+        int length = 0;
+        for( int read; (read = in.read( bytes, length, bytes.length - length )) >= 0; ) {
+            length += read;
+            int ints = length / 4;
+            ByteBuffer.wrap( bytes, 0, ints * 4 ).order( order ).asIntBuffer().get( chunk, 0, ints );
+            addAll( chunk, 0, ints );
+            // keep the bytes of an incomplete value
+            System.arraycopy( bytes, ints * 4, bytes, 0, length - ints * 4 );
+            length -= ints * 4;
+        }
+        if( length != 0 ) {
+            throw new EOFException( "Incomplete value at the end of the stream" );
+        }
+    }
+
+    /**
+     * Add the values of a channel of raw 4 byte values until the end of the channel, for example a FileChannel. The
+     * channel is not closed.
+     *
+     * @param channel the channel
+     * @param order the byte order of the values
+     * @throws IOException if any I/O error occur or the length of the channel is not a multiple of 4
+     */
+    public void addAll( ReadableByteChannel channel, ByteOrder order ) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate( CHUNK_SIZE * 4 ).order( order );
+        int[] chunk = new int[CHUNK_SIZE];
+        while( channel.read( bytes ) >= 0 ) {
+            bytes.flip();
+            int ints = bytes.remaining() / 4;
+            bytes.asIntBuffer().get( chunk, 0, ints );
+            addAll( chunk, 0, ints );
+            bytes.position( ints * 4 );
+            bytes.compact(); // keep the bytes of an incomplete value
+        }
+        if( bytes.position() != 0 ) {
+            throw new EOFException( "Incomplete value at the end of the channel" );
+        }
+    }
+
+    /**
+     * Create the set of all added values. If runs were written then they are merged and deleted. After the call the
+     * builder is empty.
+     *
+     * @return the new set
+     * @throws IOException if the runs can not be read
+     */
+    public PagedIntSet build() throws IOException {
+        try {
+            PagedIntSet set = writer.finish();
+            if( count > 0 ) {
+                if( runs.isEmpty() ) {
+                    count = sortDistinct( buffer, count );
+                    set.addAll( buffer, 0, count );
+                } else {
+                    spill();
+                }
+            }
+            if( !runs.isEmpty() ) {
+                buffer = null; // free the memory for the merge
+                PagedIntSet merged = merge();
+                if( set.isEmpty() ) {
+                    set = merged;
+                } else {
+                    set.or( merged );
+                }
+            }
+            return set;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Delete all temporary files and discard all added values.
+     *
+     * @throws IOException if a file can not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for( Path run : runs ) {
+                Files.deleteIfExists( run );
+            }
+        } finally {
+            runs.clear();
+            reset();
+        }
+    }
+
+    /**
+     * Set the builder to the empty start state.
+     */
+    private void reset() {
+        writer = new PageWriter();
+        sorted = true;
+        buffer = null;
+        count = 0;
+    }
+
+    /**
+     * Make room for at least one value in the buffer. The buffer is allocated with the first unsorted value.
+     *
+     * @throws IOException if a run can not be written
+     */
+    private void ensureSpace() throws IOException {
+        if( buffer == null ) {
+            buffer = new int[bufferSize];
+        } else if( count == buffer.length ) {
+            spill();
+        }
+    }
+
+    /**
+     * Sort the buffer and write its distinct values as a new run.
+     *
+     * @throws IOException if any I/O error occur
+     */
+    private void spill() throws IOException {
+        count = sortDistinct( buffer, count );
+        Path run = tempDirectory == null ? Files.createTempFile( "pagedintset", ".run" )
+                        : Files.createTempFile( tempDirectory, "pagedintset", ".run" );
+        runs.add( run );
+        try( FileChannel channel = FileChannel.open( run, StandardOpenOption.WRITE ) ) {
+            ByteBuffer bytes = ByteBuffer.allocate( CHUNK_SIZE * 4 );
+            for( int i = 0; i < count; i += CHUNK_SIZE ) {
+                int ints = java.lang.Math.min( CHUNK_SIZE, count - i );
+                bytes.clear();
+                bytes.asIntBuffer().put( buffer, i, ints );
+                bytes.limit( ints * 4 );
+                while( bytes.hasRemaining() ) {
+                    channel.write( bytes );
+                }
+            }
+        }
+        count = 0;
+    }
+
+    /**
+     * Merge all runs with a k-way merge into a new set. Every run is read in chunks.
+     *
+     * @return the set
+     * @throws IOException if any I/O error occur
+     */
+    private PagedIntSet merge() throws IOException {
+        RunReader[] readers = new RunReader[runs.size()];
+        try {
+            // a binary min heap of the readers by their current value
+            RunReader[] heap = new RunReader[readers.length];
+            int heapSize = 0;
+            for( int i = 0; i < readers.length; i++ ) {
+                readers[i] = new RunReader( runs.get( i ) );
+                if( readers[i].next() ) {
+                    heap[heapSize++] = readers[i];
+                }
+            }
+            for( int i = heapSize / 2 - 1; i >= 0; i-- ) {
+                siftDown( heap, heapSize, i );
+            }
+            PageWriter writer = new PageWriter();
+            while( heapSize > 0 ) {
+                RunReader reader = heap[0];
+                if( reader.current != writer.last ) { // a value can be in multiple runs
+                    writer.append( reader.current );
+                }
+                if( !reader.next() ) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown( heap, heapSize, 0 );
+            }
+            return writer.finish();
+        } finally {
+            for( RunReader reader : readers ) {
+                if( reader != null ) {
+                    reader.channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Move a reader down in the heap until the heap order is restored.
+     *
+     * @param heap the heap
+     * @param size the count of readers in the heap
+     * @param idx the index of the reader
+     */
+    private static void siftDown( RunReader[] heap, int size, int idx ) {
+        RunReader reader = heap[idx];
+        for( int child; (child = 2 * idx + 1) < size; idx = child ) {
+            if( child + 1 < size && heap[child + 1].current < heap[child].current ) {
+                child++;
+            }
+            if( reader.current <= heap[child].current ) {
+                break;
+            }
+            heap[idx] = heap[child];
+        }
+        heap[idx] = reader;
+    }
+
+    /**
+     * Sort the values and remove the duplicates.
+     *
+     * @param values the values
+     * @param count the count of values in the array
+     * @return the count of distinct values at the start of the array
+     */
+    private static int sortDistinct( int[] values, int count ) {
+        Arrays.sort( values, 0, count );
+        int distinct = 0;
+        for( int i = 0; i < count; i++ ) {
+            if( distinct == 0 || values[distinct - 1] != values[i] ) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Create the pages of a new set from ascending values. Every page is created once with the right implementation.
+     */
+    private static class PageWriter {
+
+        private final PagedIntSet set    = new PagedIntSet();
+
+        private final char[]      values = new char[1 << 16];
+
+        private int               size;
+
+        private int               key;
+
+        /**
+         * The last appended value or a value outside of the int range.
+         */
+        private long              last   = Long.MIN_VALUE;
+
+        /**
+         * Append a value that is greater as all previous values.
+         *
+         * @param value the value
+         */
+        void append( int value ) {
+            if( value >> 16 != key ) {
+                finishPage();
+                key = value >> 16;
+            }
+            values[size++] = (char)value;
+            last = value;
+        }
+
+        /**
+         * Add the collected values of the current page to the set.
+         */
+        private void finishPage() {
+            if( size > 0 ) {
+                set.appendPage( (short)key, Page.fromSorted( Arrays.copyOf( values, size ), size ) );
+                size = 0;
+            }
+        }
+
+        /**
+         * Add the last page and return the set.
+         *
+         * @return the set
+         */
+        PagedIntSet finish() {
+            finishPage();
+            return set;
+        }
+    }
+
+    /**
+     * Read the values of a run in chunks.
+     */
+    private static class RunReader {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer  bytes  = ByteBuffer.allocate( CHUNK_SIZE * 4 );
+
+        private final int[]       values = new int[CHUNK_SIZE];
+
+        private int               pos;
+
+        private int               count;
+
+        private int               current;
+
+        /**
+         * Open a run.
+         *
+         * @param run the file
+         * @throws IOException if any I/O error occur
+         */
+        RunReader( Path run ) throws IOException {
+            channel = FileChannel.open( run, StandardOpenOption.READ );
+        }
+
+        /**
+         * Move to the next value.
+         *
+         * @return false, if there are no more values
+         * @throws IOException if any I/O error occur
+         */
+        boolean next() throws IOException {
+            if( pos == count ) {
+                bytes.clear();
+                while( bytes.hasRemaining() && channel.read( bytes ) >= 0 ) {
+                    // read until the chunk is full or the end of the file
+                }
+                bytes.flip();
+                count = bytes.remaining() / 4;
+                bytes.asIntBuffer().get( values, 0, count );
+                pos = 0;
+                if( count == 0 ) {
+                    return false;
+                }
+            }
+            current = values[pos++];
+            return true;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package sets;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A page for consecutive values. The values are saved as sorted runs of a start value and a length. A full page need
+ * only one run. If the runs need more memory as another page implementation then it will be replaced.
+ */
+class RunPage extends Page {
+
+    private static final float RESIZE_FACTOR = 1.5f;
+
+    /**
+     * Pairs of the start value and the length - 1 of the runs.
+     */
+    private char[]             runs;
+
+    private int                runCount;
+
+    private int                size;
+
+    /**
+     * Create a run page with the values of another page.
+     *
+     * @param page the source
+     */
+    RunPage( Page page ) {
+        this( page.toSortedArray(), page.size() );
+    }
+
+    /**
+     * Create a run page from sorted values.
+     *
+     * @param values the sorted values
+     * @param count the count of values in the array
+     */
+    RunPage( char[] values, int count ) {
+        runs = new char[4];
+        for( int i = 0; i < count; i++ ) {
+            char value = values[i];
+            if( runCount > 0 && end( runCount - 1 ) + 1 == value ) {
+                runs[2 * runCount - 1]++;
+            } else {
+                insertRun( runCount, value, value );
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * Create a run page that use the runs.
+     *
+     * @param runs pairs of the start value and the length - 1 of the runs
+     * @param runCount the count of runs
+     * @param size the count of values
+     */
+    RunPage( char[] runs, int runCount, int size ) {
+        this.runs = runs.length == 0 ? new char[2] : runs;
+        this.runCount = runCount;
+        this.size = size;
+    }
+
+    /**
+     * Create a copy.
+     *
+     * @param page the source
+     */
+    private RunPage( RunPage page ) {
+        runs = Arrays.copyOf( page.runs, 2 * page.runCount );
+        runCount = page.runCount;
+        size = page.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page add( char value ) {
+        int idx = findRun( value );
+        if( idx >= 0 && value <= end( idx ) ) {
+            return this;
+        }
+        boolean extendPrevious = idx >= 0 && end( idx ) + 1 == value;
+        boolean extendNext = idx + 1 < runCount && value + 1 == start( idx + 1 );
+        if( extendPrevious && extendNext ) {
+            // the value close the gap between 2 runs
+            setEnd( idx, end( idx + 1 ) );
+            removeRun( idx + 1 );
+        } else if( extendPrevious ) {
+            setEnd( idx, value );
+        } else if( extendNext ) {
+            int end = end( idx + 1 );
+            runs[2 * idx + 2] = value;
+            setEnd( idx + 1, end );
+        } else {
+            insertRun( idx + 1, value, value );
+        }
+        size++;
+        return optimize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page remove( char value ) {
+        int idx = findRun( value );
+        if( idx < 0 || value > end( idx ) ) {
+            return this;
+        }
+        int start = start( idx );
+        int end = end( idx );
+        if( start == end ) {
+            removeRun( idx );
+        } else if( value == start ) {
+            runs[2 * idx] = (char)(value + 1);
+            setEnd( idx, end );
+        } else if( value == end ) {
+            setEnd( idx, value - 1 );
+        } else {
+            // split the run
+            setEnd( idx, value - 1 );
+            insertRun( idx + 1, value + 1, end );
+        }
+        size--;
+        return optimize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean contains( char value ) {
+        int idx = findRun( value );
+        return idx >= 0 && value <= end( idx );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc} The position is the index of the run in the high 16 bits and the offset in the run in the low 16
+     * bits.
+     */
+    @Override
+    int nextPosition( int pos ) {
+        int idx = pos >>> 16;
+        if( idx >= runCount ) {
+            return -1;
+        }
+        if( (pos & 0xFFFF) > runs[2 * idx + 1] ) {
+            return idx + 1 < runCount ? (idx + 1) << 16 : -1;
+        }
+        return pos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int ceilingPosition( int value ) {
+        if( value > Character.MAX_VALUE ) {
+            return -1;
+        }
+        int idx = findRun( (char)value );
+        if( idx >= 0 && value <= end( idx ) ) {
+            return (idx << 16) | (value - start( idx ));
+        }
+        return idx + 1 < runCount ? (idx + 1) << 16 : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int floor( int value ) {
+        if( value < 0 ) {
+            return -1;
+        }
+        int idx = findRun( (char)value );
+        return idx >= 0 ? java.lang.Math.min( value, end( idx ) ) : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char valueAt( int pos ) {
+        return (char)(runs[2 * (pos >>> 16)] + (pos & 0xFFFF));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int rank( int value ) {
+        if( value > Character.MAX_VALUE ) {
+            return size;
+        }
+        int idx = findRun( (char)value );
+        if( idx < 0 ) {
+            return 0;
+        }
+        int count = java.lang.Math.min( value - start( idx ), runs[2 * idx + 1] + 1 );
+        for( int i = 0; i < idx; i++ ) {
+            count += runs[2 * i + 1] + 1;
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    char select( int index ) {
+        int idx = 0;
+        for( int length; (length = runs[2 * idx + 1] + 1) <= index; idx++ ) {
+            index -= length;
+        }
+        return (char)(start( idx ) + index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Page copy() {
+        return new RunPage( this );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    long estimatedSizeInBytes() {
+        return MemoryEstimate.object( 1 + MemoryEstimate.REFERENCE + 8 ) + MemoryEstimate.array( runs.length, 2 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int slackInBytes() {
+        return (runs.length - 2 * runCount) * 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void orInto( long[] words ) {
+        for( int i = 0; i < runCount; i++ ) {
+            int start = start( i );
+            int end = end( i ) + 1; // exclusive
+            int startIdx = start >>> 6;
+            int endIdx = (end - 1) >>> 6;
+            if( startIdx == endIdx ) {
+                words[startIdx] |= (-1L << start) & (-1L >>> -end);
+            } else {
+                words[startIdx] |= -1L << start;
+                for( int idx = startIdx + 1; idx < endIdx; idx++ ) {
+                    words[idx] = -1L;
+                }
+                words[endIdx] |= -1L >>> -end;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int formatType() {
+        return FORMAT_RUN;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    int formatLength() {
+        return 2 + runCount * 4;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void write( DataOutput out ) throws IOException {
+        out.writeChar( runCount );
+        for( int i = 0; i < 2 * runCount; i++ ) {
+            out.writeChar( runs[i] );
+        }
+    }
+
+    /**
+     * Replace this page if another page implementation need less memory.
+     *
+     * @return this or the replacement
+     */
+    private Page optimize() {
+        if( size == 0 ) {
+            return this;
+        }
+        int runBytes = runCount * 4;
+        if( size > BitmapPage.MIN_SIZE ) {
+            return runBytes > BitmapPage.SIZE_IN_BYTES ? new BitmapPage( this ) : this;
+        }
+        if( size <= ArrayPage.MAX_SIZE ) {
+            return runBytes > size * 2 ? new ArrayPage( this ) : this;
+        }
+        return runBytes > HashPage.sizeInBytes( size ) ? new HashPage( this ) : this;
+    }
+
+    /**
+     * Find the run with the largest start value that is lower or equals to the value.
+     *
+     * @param value the searched value
+     * @return the index of the run or -1 if the value is lower as all runs
+     */
+    private int findRun( char value ) {
+        int low = 0;
+        int high = runCount - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            char start = runs[2 * mid];
+            if( start < value ) {
+                low = mid + 1;
+            } else if( start > value ) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private int start( int idx ) {
+        return runs[2 * idx];
+    }
+
+    private int end( int idx ) {
+        return runs[2 * idx] + runs[2 * idx + 1];
+    }
+
+    private void setEnd( int idx, int end ) {
+        runs[2 * idx + 1] = (char)(end - runs[2 * idx]);
+    }
+
+    /**
+     * Insert a new run and move the following runs.
+     *
+     * @param idx the index of the new run
+     * @param start the first value
+     * @param end the last value
+     */
+    private void insertRun( int idx, int start, int end ) {
+        if( 2 * runCount == runs.length ) {
+            runs = Arrays.copyOf( runs, 2 * java.lang.Math.max( (int)(RESIZE_FACTOR * runCount), runCount + 1 ) );
+        }
+        System.arraycopy( runs, 2 * idx, runs, 2 * idx + 2, 2 * (runCount - idx) );
+        runs[2 * idx] = (char)start;
+        runs[2 * idx + 1] = (char)(end - start);
+        runCount++;
+    }
+
+    /**
+     * Remove a run and move the following runs.
+     *
+     * @param idx the index of the run
+     */
+    private void removeRun( int idx ) {
+        runCount--;
+        System.arraycopy( runs, 2 * idx + 2, runs, 2 * idx, 2 * (runCount - idx) );
+    }
+}
@@ -0,0 +1,97 @@
+package sets;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * An optional MXBean that publish the memory of a set over JMX. The set is only weak referenced, that a registered
+ * set can be garbage collected. The values are calculated on every read of an attribute. Except of
+ * ConcurrentPagedIntSet the sets are not thread safe, that the values are only exact if the set is not changed while
+ * reading.
+ */
+public class SetStatistics implements SetStatisticsMXBean {
+
+    private final WeakReference<MemoryFootprint> set;
+
+    /**
+     * Create a new instance.
+     *
+     * @param set the observed set
+     */
+    public SetStatistics( MemoryFootprint set ) {
+        this.set = new WeakReference<>( set );
+    }
+
+    /**
+     * Register the statistics of a set at the platform MBeanServer with the object name
+     * "sets:type=SetStatistics,name=&lt;name&gt;".
+     *
+     * @param name the name of the set, it is quoted if needed
+     * @param set the set
+     * @return the object name to unregister
+     * @throws JMException if the name is already registered
+     */
+    public static ObjectName register( String name, MemoryFootprint set ) throws JMException {
+        ObjectName objectName = new ObjectName( "sets:type=SetStatistics,name=" + ObjectName.quote( name ) );
+        ManagementFactory.getPlatformMBeanServer().registerMBean( new SetStatistics( set ), objectName );
+        return objectName;
+    }
+
+    /**
+     * Unregister the statistics of a set.
+     *
+     * @param objectName the result of register()
+     * @throws JMException if the name is not registered
+     */
+    public static void unregister( ObjectName objectName ) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSize() {
+        MemoryFootprint set = this.set.get();
+        return set == null ? 0 : set.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getEstimatedSizeInBytes() {
+        MemoryFootprint set = this.set.get();
+        return set == null ? 0 : set.estimatedSizeInBytes();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPageCount() {
+        MemoryFootprint set = this.set.get();
+        return set instanceof PagedIntSet ? ((PagedIntSet)set).pageCount() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getPageFillHistogram() {
+        MemoryFootprint set = this.set.get();
+        return set instanceof PagedIntSet ? ((PagedIntSet)set).pageFillHistogram() : new int[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSlackInBytes() {
+        MemoryFootprint set = this.set.get();
+        return set instanceof PagedIntSet ? ((PagedIntSet)set).slackInBytes() : 0;
+    }
+}
@@ -0,0 +1,46 @@
+package sets;
+
+/**
+ * The management interface of SetStatistics. The page values are only available for a PagedIntSet, else they are 0.
+ */
+public interface SetStatisticsMXBean {
+
+    /**
+     * The count of values in the set.
+     *
+     * @return the size or 0 if the set was garbage collected
+     */
+    int getSize();
+
+    /**
+     * The estimated memory of the set.
+     *
+     * @return the size in bytes
+     * @see MemoryFootprint#estimatedSizeInBytes()
+     */
+    long getEstimatedSizeInBytes();
+
+    /**
+     * The count of pages.
+     *
+     * @return the count
+     * @see PagedIntSet#pageCount()
+     */
+    int getPageCount();
+
+    /**
+     * The fill level of the pages.
+     *
+     * @return the histogram
+     * @see PagedIntSet#pageFillHistogram()
+     */
+    int[] getPageFillHistogram();
+
+    /**
+     * The memory of the allocated but not used capacity.
+     *
+     * @return the size in bytes
+     * @see PagedIntSet#slackInBytes()
+     */
+    long getSlackInBytes();
+}
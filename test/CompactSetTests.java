@@ -0,0 +1,187 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sets.CompactSet;
+import sets.HashStatistics;
+import sets.IntCompactSet;
+
+/**
+ * Tests for CompactSet with any objects.
+ */
+public class CompactSetTests {
+
+    /**
+     * A key with few different hash codes and a counter of the hashCode() calls.
+     */
+    private static class Key {
+
+        static int  hashCodeCalls;
+
+        private int value;
+
+        Key( int value ) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            hashCodeCalls++;
+            return value % 7;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            return obj instanceof Key && ((Key)obj).value == value;
+        }
+    }
+
+    @Test
+    public void cachedHashes() {
+        for( boolean cacheHashes : new boolean[] { false, true } ) {
+            CompactSet set = new CompactSet( cacheHashes );
+            HashSet<Object> expected = new HashSet<>();
+            Random random = new Random( 19 );
+            for( int i = 0; i < 5000; i++ ) {
+                Key key = new Key( random.nextInt( 500 ) );
+                assertEquals( expected.add( key ), set.add( key ) );
+                key = new Key( random.nextInt( 500 ) );
+                if( i % 3 == 0 ) {
+                    assertEquals( expected.remove( key ), set.remove( key ) );
+                }
+                assertEquals( expected.contains( key ), set.contains( key ) );
+            }
+            assertEquals( expected.size(), set.size() );
+            for( Iterator<Object> iterator = set.iterator(); iterator.hasNext(); ) {
+                Object key = iterator.next();
+                assertTrue( expected.remove( key ) );
+                if( ((Key)key).value % 2 == 0 ) {
+                    iterator.remove();
+                } else {
+                    expected.add( key );
+                }
+            }
+            assertEquals( expected, set );
+        }
+    }
+
+    @Test
+    public void noHashCodeWhileResize() {
+        CompactSet set = new CompactSet( true );
+        Key.hashCodeCalls = 0;
+        for( int i = 0; i < 1000; i++ ) {
+            set.add( new Key( i ) );
+        }
+        // one call per add, the resizes and moves use the cached values
+        assertEquals( 1000, Key.hashCodeCalls );
+        Key.hashCodeCalls = 0;
+        for( int i = 0; i < 1000; i += 2 ) {
+            assertTrue( set.remove( new Key( i ) ) );
+        }
+        assertEquals( 500, Key.hashCodeCalls );
+        assertFalse( set.contains( new Key( 0 ) ) );
+        assertTrue( set.contains( new Key( 1 ) ) );
+    }
+
+    @Test
+    public void hashStatistics() {
+        // run with -Dsets.hashStatistics=true
+        assumeTrue( HashStatistics.ENABLED );
+        HashStatistics.COMPACT_SET.reset();
+        CompactSet set = new CompactSet();
+        for( int i = 0; i < 1000; i++ ) {
+            set.add( new Key( i ) ); // only 7 hash codes, long probe sequences
+        }
+        for( int i = 0; i < 1000; i++ ) {
+            set.remove( new Key( i ) );
+        }
+        HashStatistics.Snapshot snapshot = HashStatistics.COMPACT_SET.snapshot();
+        assertTrue( snapshot.getLookupCount() >= 2000 ); // the cleanup after a remove search the moved values again
+        assertTrue( snapshot.getProbeLengthHistogram()[8] > 0 ); // probe length of 128 and more
+        assertTrue( snapshot.getResizeCount() > 10 );
+        assertTrue( snapshot.getMovedElements() > 0 );
+        assertEquals( snapshot.getResizeCount(), (long)snapshot.toMap().get( "CompactSet.resizeCount" ) );
+    }
+
+    @Test
+    public void expectedSizeAndTrim() {
+        CompactSet set = new CompactSet( 10000 );
+        long bytes = set.estimatedSizeInBytes();
+        for( int i = 0; i < 10000; i++ ) {
+            set.add( i * 7 );
+        }
+        // no resize for the expected size
+        assertEquals( bytes, set.estimatedSizeInBytes() );
+        for( int i = 10; i < 10000; i++ ) {
+            assertTrue( set.remove( i * 7 ) );
+        }
+        // not shrunk below the expected size
+        assertEquals( bytes, set.estimatedSizeInBytes() );
+        set.trimToSize();
+        assertTrue( set.estimatedSizeInBytes() < bytes / 100 );
+        assertEquals( 10, set.size() );
+        for( int i = 0; i < 10; i++ ) {
+            assertTrue( set.contains( i * 7 ) );
+        }
+    }
+
+    @Test
+    public void incrementalResize() {
+        CompactSet set = new CompactSet( 0, true, true );
+        IntCompactSet intSet = new IntCompactSet( 0, true );
+        HashSet<Integer> expected = new HashSet<>();
+        Random random = new Random( 23 );
+        for( int i = 0; i < 50000; i++ ) {
+            int value = random.nextInt( 20000 ) - 100;
+            if( i % 5 == 4 || (i > 30000 && i % 2 == 0) ) {
+                boolean removed = expected.remove( value );
+                assertEquals( removed, set.remove( value ) );
+                assertEquals( removed, intSet.remove( value ) );
+            } else {
+                boolean added = expected.add( value );
+                assertEquals( added, set.add( value ) );
+                assertEquals( added, intSet.add( value ) );
+            }
+            value = random.nextInt( 20000 ) - 100;
+            assertEquals( expected.contains( value ), set.contains( value ) );
+            assertEquals( expected.contains( value ), intSet.contains( value ) );
+            assertEquals( expected.size(), set.size() );
+            assertEquals( expected.size(), intSet.size() );
+        }
+        assertEquals( expected, set );
+        assertEquals( expected, intSet );
+    }
+
+    @Test
+    public void presizedRemove() {
+        // with an incremental resize a resize is visible as the memory of the old table
+        IntCompactSet intSet = new IntCompactSet( 100000, true );
+        CompactSet set = new CompactSet( 100000, false, true );
+        HashStatistics.INT_COMPACT_SET.reset();
+        HashStatistics.COMPACT_SET.reset();
+        for( int i = 1; i <= 1000; i++ ) {
+            intSet.add( i );
+            set.add( i );
+        }
+        long intBytes = intSet.estimatedSizeInBytes();
+        long bytes = set.estimatedSizeInBytes();
+        for( int i = 1; i <= 1000; i++ ) {
+            assertTrue( intSet.remove( i ) );
+            assertTrue( set.remove( i ) );
+            // no resize below the expected size
+            assertEquals( intBytes, intSet.estimatedSizeInBytes() );
+            assertEquals( bytes, set.estimatedSizeInBytes() );
+        }
+        if( HashStatistics.ENABLED ) {
+            assertEquals( 0, HashStatistics.INT_COMPACT_SET.snapshot().getResizeCount() );
+            assertEquals( 0, HashStatistics.COMPACT_SET.snapshot().getResizeCount() );
+        }
+    }
+}
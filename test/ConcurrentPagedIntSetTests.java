@@ -0,0 +1,75 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import sets.ConcurrentPagedIntSet;
+
+/**
+ * Tests for the thread safety of ConcurrentPagedIntSet.
+ */
+public class ConcurrentPagedIntSetTests {
+
+    @Test
+    public void concurrentWrites() throws Exception {
+        ConcurrentPagedIntSet set = new ConcurrentPagedIntSet();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool( threads + 1 );
+        try {
+            // the multiples of 3 are never removed, the readers must find them every time
+            for( int value = -0x30000; value < 0x30000; value += 3 ) {
+                set.add( value );
+            }
+            AtomicBoolean running = new AtomicBoolean( true );
+            Future<?> reader = executor.submit( () -> {
+                Random random = new Random();
+                while( running.get() ) {
+                    int value = 3 * (random.nextInt( 0x20000 ) - 0x10000);
+                    assertTrue( set.contains( value ) );
+                }
+                return null;
+            } );
+            List<Future<?>> writers = new ArrayList<>();
+            for( int t = 0; t < threads; t++ ) {
+                int thread = t;
+                writers.add( executor.submit( () -> {
+                    // every thread add the values with value % threads == thread and remove the half of them
+                    for( int value = -0x30000 + thread; value < 0x30000; value += threads ) {
+                        set.add( value );
+                    }
+                    for( int value = -0x30000 + thread; value < 0x30000; value += 2 * threads ) {
+                        if( value % 3 != 0 ) {
+                            assertTrue( set.remove( value ) );
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            for( Future<?> writer : writers ) {
+                writer.get();
+            }
+            running.set( false );
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for( int value = -0x30000; value < 0x30000; value++ ) {
+            if( value % 3 == 0 || (value + 0x30000) / threads % 2 != 0 ) {
+                expected.add( value );
+            }
+        }
+        assertEquals( expected.size(), set.size() );
+        assertArrayEquals( expected.stream().mapToInt( Integer::intValue ).toArray(), set.toIntArray() );
+    }
+}
@@ -1,20 +1,36 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import sets.CompactSet;
+import sets.ConcurrentPagedIntSet;
+import sets.IntCompactSet;
+import sets.IntSet;
+import sets.MemoryFootprint;
+
 /**
  * The JUnit test, to see that the implemented Sets are compliant.
  * 
@@ -45,6 +61,13 @@ public void before() throws Exception {
         set = setClass.newInstance();
     }
 
+    @After
+    public void after() throws Exception {
+        if( set instanceof AutoCloseable ) {
+            ((AutoCloseable)set).close(); // free the direct memory of an off heap set
+        }
+    }
+
     @Test
     public void simple() {
         assertEquals( 0, set.size() );
@@ -80,6 +103,61 @@ public void notSetValueOfIntCompactSet() {
         assertEquals( 3, set.size() );
     }
 
+    @Test
+    public void zeroValue() {
+        // 0 is the empty slot of the hash tables
+        assertFalse( set.contains( 0 ) );
+        assertFalse( set.remove( 0 ) );
+        for( int i = -100; i <= 100; i++ ) {
+            assertTrue( set.add( i ) );
+        }
+        assertFalse( set.add( 0 ) );
+        assertTrue( set.contains( 0 ) );
+        assertEquals( 201, set.size() );
+        int count = 0;
+        for( Integer value : set ) {
+            assertTrue( value >= -100 && value <= 100 );
+            count++;
+        }
+        assertEquals( 201, count );
+        assertTrue( set.remove( 0 ) );
+        assertFalse( set.contains( 0 ) );
+        assertTrue( set.contains( 1 ) );
+        assertEquals( 200, set.size() );
+    }
+
+    @Test
+    public void estimatedSize() {
+        assumeTrue( set instanceof MemoryFootprint );
+        MemoryFootprint footprint = (MemoryFootprint)set;
+        long empty = footprint.estimatedSizeInBytes();
+        assertTrue( empty > 0 );
+        for( int i = 0; i < 100000; i++ ) {
+            set.add( i * 7 );
+        }
+        long bytes = footprint.estimatedSizeInBytes();
+        assertTrue( bytes > empty );
+        // no set need more as an Integer object per value
+        assertTrue( bytes < 16 * 100000 );
+    }
+
+    @Test
+    public void shrink() {
+        assumeTrue( set instanceof IntCompactSet || (Object)set instanceof CompactSet );
+        for( int i = 0; i < 100000; i++ ) {
+            set.add( i * 7 );
+        }
+        long bytes = ((MemoryFootprint)set).estimatedSizeInBytes();
+        for( int i = 100; i < 100000; i++ ) {
+            assertTrue( set.remove( i * 7 ) );
+        }
+        // the table is shrunk while removing
+        assertTrue( ((MemoryFootprint)set).estimatedSizeInBytes() < bytes / 100 );
+        for( int i = 0; i < 100000; i++ ) {
+            assertEquals( i < 100, set.contains( i * 7 ) );
+        }
+    }
+
     @Test
     public void onePage() {
         // add a full page of values
@@ -166,4 +244,193 @@ public void iterator() {
         }
     }
 
+    @Test
+    public void primitiveIntSet() {
+        assumeTrue( set instanceof IntSet );
+        IntSet intSet = (IntSet)set;
+        assertTrue( intSet.add( 42 ) );
+        assertFalse( intSet.add( 42 ) );
+        assertTrue( intSet.add( -7 ) );
+        assertTrue( intSet.add( 12345678 ) );
+        assertEquals( 3, intSet.size() );
+        assertTrue( intSet.contains( 42 ) );
+        assertTrue( set.contains( 42 ) );
+        assertFalse( intSet.contains( 43 ) );
+
+        int[] expected = { -7, 42, 12345678 };
+        int[] array = intSet.toIntArray();
+        Arrays.sort( array );
+        assertArrayEquals( expected, array );
+
+        int[] sum = new int[1];
+        intSet.forEachInt( (int value) -> sum[0] += value );
+        assertEquals( -7 + 42 + 12345678, sum[0] );
+
+        assertTrue( intSet.remove( -7 ) );
+        assertFalse( intSet.remove( -7 ) );
+        assertFalse( set.contains( -7 ) );
+        assertEquals( 2, intSet.size() );
+    }
+
+    @Test
+    public void iteratorRemove() {
+        HashSet<Integer> expected = new HashSet<>();
+        for( int i = 0; i < 10000; i++ ) {
+            set.add( i * 7 );
+            expected.add( i * 7 );
+        }
+        HashSet<Integer> visited = new HashSet<>();
+        for( Iterator<Integer> iterator = set.iterator(); iterator.hasNext(); ) {
+            Integer value = iterator.next();
+            assertTrue( "double value " + value, visited.add( value ) );
+            if( value % 2 == 0 ) {
+                iterator.remove();
+                expected.remove( value );
+            }
+        }
+        assertEquals( 10000, visited.size() );
+        assertEquals( expected.size(), set.size() );
+        assertEquals( expected, set );
+        for( Integer value : visited ) {
+            assertEquals( value % 2 != 0, set.contains( value ) );
+        }
+
+        // remove all
+        for( Iterator<Integer> iterator = set.iterator(); iterator.hasNext(); ) {
+            iterator.next();
+            iterator.remove();
+        }
+        assertEquals( 0, set.size() );
+        assertFalse( set.iterator().hasNext() );
+    }
+
+    @Test
+    public void iteratorFailFast() {
+        assumeFalse( set instanceof ConcurrentPagedIntSet ); // weakly consistent iterator
+        set.add( 1 );
+        set.add( 2 );
+        Iterator<Integer> iterator = set.iterator();
+        iterator.next();
+        set.add( 3 );
+        try {
+            iterator.next();
+            fail( "ConcurrentModificationException expected" );
+        } catch( ConcurrentModificationException e ) {
+            // expected;
+        }
+    }
+
+    @Test
+    public void randomDensity() {
+        // fill and thin out some pages with different densities
+        Random random = new Random( 42 );
+        HashSet<Integer> expected = new HashSet<>();
+        for( int round = 0; round < 4; round++ ) {
+            for( int i = 0; i < 20000; i++ ) {
+                int value = random.nextInt( 0x30000 ) - 0x10000;
+                assertEquals( expected.add( value ), set.add( value ) );
+            }
+            assertEquals( expected.size(), set.size() );
+            for( int i = 0; i < 25000; i++ ) {
+                int value = random.nextInt( 0x30000 ) - 0x10000;
+                assertEquals( expected.remove( value ), set.remove( value ) );
+            }
+            assertEquals( expected.size(), set.size() );
+            assertEquals( expected, new HashSet<>( set ) );
+        }
+        for( int value = -0x10000; value < 0x20000; value++ ) {
+            assertEquals( expected.contains( value ), set.contains( value ) );
+        }
+    }
+
+    @Test
+    public void consecutiveRanges() {
+        for( int i = 0x10000; i < 0x30000; i++ ) {
+            set.add( i );
+        }
+        assertEquals( 0x20000, set.size() );
+        // split the runs
+        for( int i = 0x10000; i < 0x30000; i += 1000 ) {
+            assertTrue( set.remove( i ) );
+        }
+        assertEquals( 0x20000 - 132, set.size() );
+        for( int i = 0xFFFF; i <= 0x30000; i++ ) {
+            assertEquals( i != 0xFFFF && i != 0x30000 && (i - 0x10000) % 1000 != 0, set.contains( i ) );
+        }
+        // close the gaps again
+        for( int i = 0x10000; i < 0x30000; i += 1000 ) {
+            assertTrue( set.add( i ) );
+        }
+        assertEquals( 0x20000, set.size() );
+        int count = 0;
+        for( Integer value : set ) {
+            assertTrue( value >= 0x10000 && value < 0x30000 );
+            count++;
+        }
+        assertEquals( 0x20000, count );
+    }
+
+    @Test
+    public void batchAddRemove() {
+        assumeTrue( set instanceof IntSet );
+        IntSet intSet = (IntSet)set;
+        HashSet<Integer> expected = new HashSet<>();
+        Random random = new Random( 3 );
+        int[] values = new int[100000];
+        for( int i = 0; i < values.length; i++ ) {
+            // a sorted part with runs and duplicates and an unsorted part
+            values[i] = i < 60000 ? i / 2 + (i / 5000) * 70000 : random.nextInt( 0x40000 ) - 0x20000;
+        }
+        assertTrue( intSet.addAll( values, 10, 90000 ) );
+        for( int i = 10; i < 90010; i++ ) {
+            expected.add( values[i] );
+        }
+        assertEquals( expected.size(), set.size() );
+        assertEquals( expected, new HashSet<>( set ) );
+        assertFalse( intSet.addAll( values, 10, 90000 ) );
+
+        assertTrue( intSet.removeAll( values, 30000, 50000 ) );
+        for( int i = 30000; i < 80000; i++ ) {
+            expected.remove( values[i] );
+        }
+        assertEquals( expected.size(), set.size() );
+        assertEquals( expected, new HashSet<>( set ) );
+        assertFalse( intSet.removeAll( values, 30000, 50000 ) );
+    }
+
+    @Test
+    public void parallelStream() {
+        long sum = 0;
+        Random random = new Random( 5 );
+        for( int i = 0; i < 200000; i++ ) {
+            int value = random.nextInt( 0x100000 ) - 0x40000;
+            if( set.add( value ) ) {
+                sum += value;
+            }
+        }
+        assertEquals( set.size(), set.parallelStream().count() );
+        assertEquals( sum, set.parallelStream().mapToLong( Integer::longValue ).sum() );
+        assertEquals( new HashSet<>( set ), set.parallelStream().collect( Collectors.toSet() ) );
+
+        assumeTrue( set instanceof IntSet );
+        IntSet intSet = (IntSet)set;
+        assertEquals( sum, intSet.intStream().parallel().asLongStream().sum() );
+        assertEquals( set.size(), intSet.intStream().parallel().distinct().count() );
+        Spliterator.OfInt spliterator = intSet.intSpliterator();
+        assertEquals( set.size(), spliterator.estimateSize() );
+        // the characteristics does not change while traversing
+        int characteristics = spliterator.characteristics();
+        assertTrue( spliterator.tryAdvance( (int value) -> {} ) );
+        assertEquals( characteristics, spliterator.characteristics() );
+        if( spliterator.hasCharacteristics( Spliterator.SIZED ) ) {
+            assertEquals( set.size() - 1, spliterator.estimateSize() );
+        }
+        spliterator = intSet.intSpliterator();
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        assertTrue( prefix != null );
+        long[] count = new long[1];
+        prefix.forEachRemaining( (int value) -> count[0]++ );
+        spliterator.forEachRemaining( (int value) -> count[0]++ );
+        assertEquals( set.size(), count[0] );
+    }
 }
@@ -0,0 +1,110 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import sets.LongPagedSet;
+
+/**
+ * Tests for LongPagedSet.
+ */
+public class LongPagedSetTests {
+
+    @Test
+    public void sortedValues() {
+        LongPagedSet set = new LongPagedSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random( 17 );
+        long[] bases = { Long.MIN_VALUE, -0x80000000L, -1L << 40, 0, 0x7FFFFFF0L, 1L << 40, Long.MAX_VALUE - 0x10000 };
+        for( int i = 0; i < 200000; i++ ) {
+            // clusters at the limits of the high and low 32 bits
+            long value = bases[random.nextInt( bases.length )] + random.nextInt( 0x20000 );
+            assertEquals( expected.add( value ), set.add( value ) );
+            if( i % 3 == 0 ) {
+                value = bases[random.nextInt( bases.length )] + random.nextInt( 0x20000 );
+                assertEquals( expected.remove( value ), set.remove( value ) );
+            }
+        }
+        assertEquals( expected.size(), set.size() );
+        assertEquals( expected, set );
+        assertArrayEquals( expected.stream().mapToLong( Long::longValue ).toArray(), set.toLongArray() );
+        int count = 0;
+        Iterator<Long> expectedIterator = expected.iterator();
+        for( Long value : set ) {
+            assertEquals( expectedIterator.next(), value );
+            count++;
+        }
+        assertEquals( expected.size(), count );
+        for( long value = -0x10000; value < 0x10000; value++ ) {
+            assertEquals( expected.contains( value ), set.contains( value ) );
+        }
+        assertTrue( set.contains( bases[0] ) || !expected.contains( bases[0] ) );
+        assertFalse( set.contains( 0x7FFFFFFFFFFL ) );
+    }
+
+    @Test
+    public void iteratorRemove() {
+        LongPagedSet set = new LongPagedSet();
+        for( long value = -3; value < 3; value++ ) {
+            set.add( value << 32 );
+            set.add( (value << 32) + 1 );
+        }
+        set.add( (10L << 32) + 2 ); // a set that is removed while iterating
+        for( Iterator<Long> iterator = set.iterator(); iterator.hasNext(); ) {
+            if( (iterator.next() & 1) == 0 ) {
+                iterator.remove();
+            }
+        }
+        assertEquals( 6, set.size() );
+        long[] values = set.toLongArray();
+        for( int i = 0; i < values.length; i++ ) {
+            assertEquals( ((i - 3L) << 32) + 1, values[i] );
+        }
+    }
+
+    @Test
+    public void sparseValues() {
+        LongPagedSet set = new LongPagedSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random( 29 );
+        for( int i = 0; i < 200000; i++ ) {
+            long value = random.nextLong();
+            if( i % 10 == 0 ) {
+                value = (value & 0xFFFFFFFF00000000L) | 7; // some groups with more values
+            }
+            assertEquals( expected.add( value ), set.add( value ) );
+        }
+        // a group with one value is saved inline, a HashSet<Long> needs about 48 bytes per value
+        assertTrue( set.estimatedSizeInBytes() < 16L * set.size() );
+
+        for( int i = 0; i < 50000; i++ ) {
+            Long value = expected.ceiling( random.nextLong() );
+            if( value == null ) {
+                value = expected.first();
+            }
+            assertTrue( set.remove( value.longValue() ) );
+            assertFalse( set.remove( value.longValue() ) );
+            expected.remove( value );
+        }
+        for( Iterator<Long> iterator = set.iterator(); iterator.hasNext(); ) {
+            Long value = iterator.next();
+            if( (value & 3) == 3 ) {
+                iterator.remove();
+                assertTrue( expected.remove( value ) );
+            }
+        }
+        assertEquals( expected.size(), set.size() );
+        assertArrayEquals( expected.stream().mapToLong( Long::longValue ).toArray(), set.toLongArray() );
+        for( Long value : expected ) {
+            assertTrue( set.remove( value.longValue() ) );
+        }
+        assertTrue( set.isEmpty() );
+        assertFalse( set.iterator().hasNext() );
+    }
+}
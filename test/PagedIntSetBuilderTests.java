@@ -0,0 +1,118 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sets.PagedIntSet;
+import sets.PagedIntSetBuilder;
+
+/**
+ * Tests for the building of a PagedIntSet from sorted and unsorted input.
+ */
+public class PagedIntSetBuilderTests {
+
+    private Path tempDirectory;
+
+    @Before
+    public void before() throws IOException {
+        tempDirectory = Files.createTempDirectory( "builder" );
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.delete( tempDirectory ); // fails if a run was not deleted
+    }
+
+    @Test
+    public void sortedStream() throws IOException {
+        try( PagedIntSetBuilder builder = new PagedIntSetBuilder( 1000, tempDirectory ) ) {
+            // a run page, an array page, a hash page and a bitmap page
+            builder.addAll( IntStream.range( -0x8000, 0x8000 ) );
+            builder.addAll( IntStream.iterate( 0x10000, value -> value + 3 ).limit( 3000 ) );
+            builder.add( 0x7FFFFFFF );
+            builder.add( 0x7FFFFFFF ); // a duplicate is no unsorted value
+            PagedIntSet set = builder.build();
+            assertEquals( 0x10000 + 3000 + 1, set.size() );
+            assertEquals( -0x8000, set.first() );
+            assertEquals( 0x7FFFFFFF, set.last() );
+            assertTrue( set.contains( 0x10000 + 2999 * 3 ) );
+            assertEquals( 0, fileCount() ); // no runs for sorted values
+        }
+    }
+
+    @Test
+    public void unsortedWithRuns() throws IOException {
+        int[] values = new Random( 17 ).ints( 100000, -0x30000, 0x30000 ).toArray();
+        try( PagedIntSetBuilder builder = new PagedIntSetBuilder( 4096, tempDirectory ) ) {
+            builder.addAll( IntStream.range( -0x40000, -0x30000 ) ); // sorted prefix
+            builder.addAll( values, 0, values.length );
+            assertTrue( fileCount() > 10 );
+            PagedIntSet set = builder.build();
+            int[] expected = IntStream.concat( IntStream.range( -0x40000, -0x30000 ), Arrays.stream( values ) ).sorted()
+                            .distinct().toArray();
+            assertArrayEquals( expected, set.toIntArray() );
+        }
+    }
+
+    @Test
+    public void streamsAndChannels() throws IOException {
+        int[] values = new Random( 3 ).ints( 20000 ).toArray();
+        int[] expected = Arrays.stream( values ).sorted().distinct().toArray();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        for( int value : values ) {
+            out.writeInt( value );
+        }
+        try( PagedIntSetBuilder builder = new PagedIntSetBuilder( 5000, tempDirectory ) ) {
+            DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+            builder.addAll( in, ByteOrder.BIG_ENDIAN );
+            assertArrayEquals( expected, builder.build().toIntArray() );
+
+            Path file = tempDirectory.resolve( "values" );
+            ByteBuffer buffer = ByteBuffer.allocate( values.length * 4 ).order( ByteOrder.LITTLE_ENDIAN );
+            buffer.asIntBuffer().put( values );
+            Files.write( file, buffer.array() );
+            try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+                builder.addAll( channel, ByteOrder.LITTLE_ENDIAN );
+            } finally {
+                Files.delete( file );
+            }
+            assertArrayEquals( expected, builder.build().toIntArray() );
+
+            try {
+                builder.addAll( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4, 5 } ), ByteOrder.BIG_ENDIAN );
+                fail( "EOFException expected" );
+            } catch( EOFException e ) {
+                // expected;
+            }
+        }
+    }
+
+    private int fileCount() throws IOException {
+        try( Stream<Path> files = Files.list( tempDirectory ) ) {
+            return (int)files.count();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sets.ImmutablePagedIntSet;
+import sets.PagedIntSet;
+import sets.PagedIntSet.SubSet;
+import sets.SetStatistics;
+
+/**
+ * Tests for the features of PagedIntSet that the other sets does not have.
+ */
+public class PagedIntSetTests {
+
+    private PagedIntSet set;
+
+    private int[]       values;
+
+    @Before
+    public void before() {
+        set = new PagedIntSet();
+        Random random = new Random( 13 );
+        values = new int[50000];
+        for( int i = 0; i < values.length; i++ ) {
+            // some pages with different densities and negative values
+            values[i] = random.nextInt( 0x50000 ) - 0x20000;
+            set.add( values[i] );
+        }
+        values = Arrays.stream( values ).sorted().distinct().toArray();
+    }
+
+    @Test
+    public void sortedIteration() {
+        assertEquals( values.length, set.size() );
+        assertArrayEquals( values, set.toIntArray() );
+        int idx = 0;
+        for( Integer value : set ) {
+            assertEquals( values[idx++], value.intValue() );
+        }
+        assertEquals( values.length, idx );
+    }
+
+    @Test
+    public void iteratorRemoveWhilePagesChange() {
+        // remove most values of the pages, that the pages are converted while iterating
+        int idx = 0;
+        for( Iterator<Integer> iterator = set.iterator(); iterator.hasNext(); ) {
+            int value = iterator.next();
+            assertEquals( values[idx++], value );
+            if( value % 10 != 0 ) {
+                iterator.remove();
+            }
+        }
+        assertEquals( values.length, idx );
+        int[] expected = Arrays.stream( values ).filter( value -> value % 10 == 0 ).toArray();
+        assertArrayEquals( expected, set.toIntArray() );
+        assertEquals( expected.length, set.size() );
+        for( int value : values ) {
+            assertEquals( value % 10 == 0, set.contains( value ) );
+        }
+    }
+
+    @Test
+    public void clear() {
+        set.clear();
+        assertEquals( 0, set.size() );
+        assertFalse( set.iterator().hasNext() );
+        assertTrue( set.add( 5 ) );
+        assertArrayEquals( new int[] { 5 }, set.toIntArray() );
+    }
+
+    @Test
+    public void orderedQueries() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        for( int value : values ) {
+            expected.add( value );
+        }
+        assertEquals( expected.first().intValue(), set.first() );
+        assertEquals( expected.last().intValue(), set.last() );
+        Random random = new Random( 7 );
+        for( int i = 0; i < 20000; i++ ) {
+            int value = random.nextInt( 0x60000 ) - 0x28000;
+            assertEquals( toLong( expected.ceiling( value ) ), set.ceiling( value ) );
+            assertEquals( toLong( expected.floor( value ) ), set.floor( value ) );
+            assertEquals( toLong( expected.higher( value ) ), set.higher( value ) );
+            assertEquals( toLong( expected.lower( value ) ), set.lower( value ) );
+        }
+        assertEquals( PagedIntSet.NO_VALUE, set.higher( Integer.MAX_VALUE ) );
+        assertEquals( PagedIntSet.NO_VALUE, set.lower( Integer.MIN_VALUE ) );
+
+        set.clear();
+        assertEquals( PagedIntSet.NO_VALUE, set.ceiling( 0 ) );
+        try {
+            set.first();
+            fail( "NoSuchElementException expected" );
+        } catch( NoSuchElementException e ) {
+            // expected;
+        }
+    }
+
+    private static long toLong( Integer value ) {
+        return value == null ? PagedIntSet.NO_VALUE : value.longValue();
+    }
+
+    @Test
+    public void subSet() {
+        int from = -0x12345;
+        int to = 0x1ABCD;
+        SubSet subSet = set.subSet( from, to );
+        int[] expected = Arrays.stream( values ).filter( value -> value >= from && value < to ).toArray();
+        assertArrayEquals( expected, subSet.toIntArray() );
+        assertEquals( expected.length, subSet.size() );
+        assertTrue( subSet.contains( expected[0] ) );
+        assertFalse( subSet.contains( values[0] ) );
+
+        // write through
+        assertTrue( subSet.remove( expected[0] ) );
+        assertFalse( set.contains( expected[0] ) );
+        assertFalse( subSet.remove( values[0] ) );
+        assertTrue( set.contains( values[0] ) );
+        assertTrue( subSet.add( expected[0] ) );
+        assertTrue( set.contains( expected[0] ) );
+        try {
+            subSet.add( to );
+            fail( "IllegalArgumentException expected" );
+        } catch( IllegalArgumentException e ) {
+            // expected;
+        }
+
+        assertArrayEquals( Arrays.stream( values ).filter( value -> value < 0 ).toArray(), set.headSet( 0 ).toIntArray() );
+        assertArrayEquals( Arrays.stream( values ).filter( value -> value >= 0 ).toArray(), set.tailSet( 0 ).toIntArray() );
+        assertTrue( set.subSet( 5, 5 ).isEmpty() );
+    }
+
+    @Test
+    public void setAlgebra() {
+        PagedIntSet other = new PagedIntSet();
+        for( int value = -0x30000; value < 0x30000; value += 3 ) {
+            other.add( value );
+        }
+        for( int value = 0x40000; value < 0x50000; value++ ) {
+            other.add( value ); // a full page that is not in set
+        }
+        HashSet<Integer> or = new HashSet<>( set );
+        or.addAll( new HashSet<>( other ) );
+        HashSet<Integer> and = new HashSet<>( set );
+        and.retainAll( new HashSet<>( other ) );
+        HashSet<Integer> andNot = new HashSet<>( set );
+        andNot.removeAll( new HashSet<>( other ) );
+        HashSet<Integer> xor = new HashSet<>( or );
+        xor.removeAll( and );
+
+        assertEquals( or, PagedIntSet.or( set, other ) );
+        assertEquals( and, PagedIntSet.and( set, other ) );
+        assertEquals( andNot, PagedIntSet.andNot( set, other ) );
+        assertEquals( xor, PagedIntSet.xor( set, other ) );
+        assertEquals( and.size(), PagedIntSet.andCardinality( set, other ) );
+        assertEquals( or.size(), PagedIntSet.orCardinality( set, other ) );
+        assertEquals( values.length, set.size() );
+
+        PagedIntSet copy = PagedIntSet.or( set, new PagedIntSet() );
+        assertTrue( copy.retainAll( other ) );
+        assertEquals( and, copy );
+        copy.xor( other );
+        assertEquals( PagedIntSet.andNot( other, set ), copy );
+        copy.or( set );
+        assertEquals( or, copy );
+        copy.andNot( copy );
+        assertTrue( copy.isEmpty() );
+    }
+
+    @Test
+    public void binaryFormat() throws IOException, ClassNotFoundException {
+        for( int value = 0x40000; value < 0x50000; value++ ) {
+            set.add( value ); // a run page
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.write( new DataOutputStream( bytes ) );
+
+        PagedIntSet copy = PagedIntSet.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+        assertEquals( set.size(), copy.size() );
+        assertArrayEquals( set.toIntArray(), copy.toIntArray() );
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try( ObjectOutputStream out = new ObjectOutputStream( serialized ) ) {
+            out.writeObject( set );
+        }
+        try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( serialized.toByteArray() ) ) ) {
+            assertEquals( set, in.readObject() );
+        }
+
+        Path file = Files.createTempFile( "PagedIntSet", ".bin" );
+        try {
+            Files.write( file, bytes.toByteArray() );
+            ImmutablePagedIntSet mapped = ImmutablePagedIntSet.open( file );
+            assertEquals( set.size(), mapped.size() );
+            assertArrayEquals( set.toIntArray(), mapped.toIntArray() );
+            for( int value = -0x30000; value < 0x60000; value++ ) {
+                assertEquals( set.contains( value ), mapped.contains( value ) );
+            }
+            int idx = 0;
+            int[] expected = set.toIntArray();
+            for( Integer value : mapped ) {
+                assertEquals( expected[idx++], value.intValue() );
+            }
+            assertEquals( expected.length, idx );
+            assertEquals( set, mapped );
+            try {
+                mapped.add( 1 );
+                fail( "read only" );
+            } catch( UnsupportedOperationException ex ) {
+                // expected
+            }
+        } finally {
+            Files.delete( file );
+        }
+
+        try {
+            PagedIntSet.read( new DataInputStream( new ByteArrayInputStream( new byte[16] ) ) );
+            fail( "invalid data" );
+        } catch( IOException ex ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void corruptMappedData() throws IOException {
+        for( int value = 0x40000; value < 0x50000; value++ ) {
+            set.add( value ); // a run page
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        set.write( new DataOutputStream( out ) );
+        byte[] bytes = out.toByteArray();
+        new ImmutablePagedIntSet( ByteBuffer.wrap( bytes ) );
+
+        // truncated payload of the last page
+        assertInvalid( Arrays.copyOf( bytes, bytes.length - 1 ) );
+        // unknown payload type of the first page
+        byte[] corrupt = bytes.clone();
+        corrupt[16 + 2] = 9;
+        assertInvalid( corrupt );
+        // payload offset of the first page in the directory
+        corrupt = bytes.clone();
+        corrupt[16 + 8] = corrupt[16 + 9] = corrupt[16 + 10] = corrupt[16 + 11] = 0;
+        assertInvalid( corrupt );
+        // count of the run page that does not match the runs, with a matching size in the header
+        corrupt = bytes.clone();
+        ByteBuffer buffer = ByteBuffer.wrap( corrupt );
+        int entry = 16 + (buffer.getInt( 8 ) - 1) * 12;
+        assertEquals( 3, buffer.get( entry + 2 ) );
+        buffer.putInt( entry + 4, buffer.getInt( entry + 4 ) - 1 );
+        buffer.putInt( 12, buffer.getInt( 12 ) - 1 );
+        assertInvalid( corrupt );
+    }
+
+    private static void assertInvalid( byte[] bytes ) {
+        try {
+            new ImmutablePagedIntSet( ByteBuffer.wrap( bytes ) );
+            fail( "IOException expected" );
+        } catch( IOException ex ) {
+            // expected
+        }
+        try {
+            PagedIntSet.read( new DataInputStream( new ByteArrayInputStream( bytes ) ) );
+            fail( "IOException expected" );
+        } catch( IOException ex ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void freeze() {
+        PagedIntSet snapshot = set.freeze();
+        assertTrue( snapshot.isFrozen() );
+        assertFalse( set.isFrozen() );
+        assertArrayEquals( values, snapshot.toIntArray() );
+
+        // change every page of the live set with the different write paths
+        TreeSet<Integer> expected = new TreeSet<>( set );
+        for( int value = -0x20000; value < 0x30000; value += 7 ) {
+            assertEquals( expected.add( value ), set.add( value ) );
+            assertEquals( expected.remove( value + 1 ), set.remove( value + 1 ) );
+        }
+        int[] batch = { -0x20000 + 2, 5, 0x10000 + 9, 0x20000 + 11 };
+        set.addAll( batch, 0, batch.length );
+        set.removeAll( values, 0, 100 );
+        for( int value : batch ) {
+            expected.add( value );
+        }
+        for( int i = 0; i < 100; i++ ) {
+            expected.remove( values[i] );
+        }
+        assertEquals( expected, set );
+        assertArrayEquals( values, snapshot.toIntArray() );
+
+        PagedIntSet other = new PagedIntSet();
+        other.add( 3 );
+        set.xor( other );
+        assertArrayEquals( values, snapshot.toIntArray() );
+
+        try {
+            snapshot.add( 1 );
+            fail( "frozen" );
+        } catch( UnsupportedOperationException ex ) {
+            // expected
+        }
+        try {
+            snapshot.addAll( other );
+            fail( "frozen" );
+        } catch( UnsupportedOperationException ex ) {
+            // expected
+        }
+        assertTrue( snapshot.freeze() == snapshot );
+
+        PagedIntSet compact = snapshot.compact();
+        assertTrue( compact.isFrozen() );
+        assertEquals( snapshot, compact );
+        assertArrayEquals( values, compact.toIntArray() );
+        PagedIntSet copy = PagedIntSet.or( compact, other );
+        assertTrue( copy.add( 0x7FFFFFFF ) );
+        assertEquals( values.length + 2 - (compact.contains( 3 ) ? 1 : 0), copy.size() );
+    }
+
+    @Test
+    public void sortedSpliterator() {
+        assertArrayEquals( values, set.intStream().parallel().toArray() );
+        assertArrayEquals( values, set.parallelStream().mapToInt( Integer::intValue ).toArray() );
+        assertTrue( set.intSpliterator().hasCharacteristics( Spliterator.SORTED | Spliterator.SIZED ) );
+
+        // split after the start of the first page
+        Spliterator.OfInt spliterator = set.intSpliterator();
+        int[] first = new int[1];
+        assertTrue( spliterator.tryAdvance( (int value) -> first[0] = value ) );
+        assertEquals( values[0], first[0] );
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        assertEquals( values.length - 1, prefix.estimateSize() + spliterator.estimateSize() );
+        int[] idx = { 1 };
+        prefix.forEachRemaining( (int value) -> assertEquals( values[idx[0]++], value ) );
+        spliterator.forEachRemaining( (int value) -> assertEquals( values[idx[0]++], value ) );
+        assertEquals( values.length, idx[0] );
+    }
+
+    @Test
+    public void memoryStatistics() throws Exception {
+        assertEquals( 5, set.pageCount() );
+        int[] histogram = set.pageFillHistogram();
+        assertEquals( 17, histogram.length );
+        assertEquals( 5, Arrays.stream( histogram ).sum() );
+        assertEquals( 5, histogram[13] ); // every page has about 10000 values
+        long bytes = set.estimatedSizeInBytes();
+        long slack = set.slackInBytes();
+        assertTrue( slack >= 0 && slack < bytes );
+        assertTrue( set.compact().estimatedSizeInBytes() <= bytes );
+        assertTrue( bytes < new PagedIntSet().estimatedSizeInBytes() + 5 * 8192 + 1024 );
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = SetStatistics.register( "test", set );
+        try {
+            assertEquals( bytes, server.getAttribute( name, "EstimatedSizeInBytes" ) );
+            assertEquals( values.length, server.getAttribute( name, "Size" ) );
+            assertArrayEquals( histogram, (int[])server.getAttribute( name, "PageFillHistogram" ) );
+        } finally {
+            SetStatistics.unregister( name );
+        }
+    }
+
+    @Test
+    public void trimToSize() {
+        for( int i = 0; i < values.length; i++ ) {
+            if( i % 16 != 0 ) {
+                set.remove( values[i] ); // the pages thin out to arrays
+            }
+        }
+        long bytes = set.estimatedSizeInBytes();
+        set.trimToSize();
+        assertTrue( set.estimatedSizeInBytes() < bytes );
+        assertTrue( set.slackInBytes() < set.estimatedSizeInBytes() / 10 );
+        for( int i = 0; i < values.length; i++ ) {
+            assertEquals( i % 16 == 0, set.contains( values[i] ) );
+        }
+        assertTrue( set.add( 0x7FFFFFFF ) );
+    }
+
+    @Test
+    public void rankAndSelect() {
+        for( int value = 0x40000; value < 0x48000; value++ ) {
+            set.add( value ); // a run page
+        }
+        for( int value = 0x50000; value < 0x52000; value += 7 ) {
+            set.add( value ); // a hash page
+        }
+        set.add( Integer.MAX_VALUE ); // an array page
+        values = set.toIntArray();
+        for( int i = 0; i < values.length; i++ ) {
+            assertEquals( values[i], set.select( i ) );
+            assertEquals( i, set.rank( values[i] ) );
+        }
+        assertEquals( 0, set.rank( Integer.MIN_VALUE ) );
+        assertEquals( values.length - 1, set.rank( Integer.MAX_VALUE ) );
+        assertEquals( Arrays.stream( values ).filter( value -> value < 0x12345 ).count(), set.rank( 0x12345 ) );
+        try {
+            set.select( values.length );
+            fail( "IndexOutOfBoundsException expected" );
+        } catch( IndexOutOfBoundsException e ) {
+            // expected;
+        }
+
+        // the index is rebuilt after a change
+        assertTrue( set.remove( values[0] ) );
+        assertEquals( values[1], set.select( 0 ) );
+        assertEquals( 1, set.rank( values[2] ) );
+        assertEquals( values.length - 2, set.subSet( values[1], Integer.MAX_VALUE ).size() );
+        assertEquals( values.length - 1, set.tailSet( Integer.MIN_VALUE ).size() );
+    }
+}